@@ -21,6 +21,8 @@ import com.ibm.streams.operator.model.Libraries;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streamsx.elasticsearch.client.ClientMetrics;
 import com.ibm.streamsx.elasticsearch.client.Configuration;
+import com.ibm.streamsx.elasticsearch.client.HttpClientType;
+import com.ibm.streamsx.elasticsearch.client.NodeSelectionStrategy;
 import com.ibm.streamsx.elasticsearch.i18n.Messages;
 import com.ibm.streamsx.elasticsearch.util.StreamsHelper;
 
@@ -38,6 +40,10 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 	private Metric isConnected;
 	private Metric totalFailedRequests;
 	private Metric reconnectionCount;
+	private Metric totalBackoffTime;
+	private Metric numNodes;
+	private Metric numNodeDiscoveries;
+	private Metric numFailedNodeDiscoveries;
 	
 	// parameter related members ----------------------------------------------------------------------
 	
@@ -51,6 +57,12 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 	// reconnection policy 
 	private int reconnectionPolicyCount = 1;
 	
+	// backoff between reconnection attempts
+	private long reconnectionInitialDelay = 1000L;
+	private double reconnectionBackoffMultiplier = 2.0;
+	private long reconnectionMaxDelay = 30000L;
+	private long reconnectionDeadline = 0L;
+	
 	// The username for basic authentication 
 	private String userName = null;
 	
@@ -83,6 +95,25 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 	private int connectionTimeout = 20000;
 	private long maxConnectionIdleTime = 1500L;
 	
+	// concurrent connections, in total and per node
+	private int maxConnections = 1;
+	private int maxConnectionsPerNode = 0;
+	
+	// discovery of the cluster nodes
+	private boolean nodeDiscoveryEnabled = false;
+	private long nodeDiscoveryInterval = 60000L;
+	private String nodeDiscoveryFilter = "data:true,ingest:true";
+	
+	// choice of the node for a request
+	private String nodeSelectionStrategy = NodeSelectionStrategy.ROUND_ROBIN.getParameterValue();
+	
+	// circuit breaker per node
+	private int circuitBreakerFailureThreshold = 3;
+	private long circuitBreakerProbeInterval = 5000L;
+	
+	// the HTTP client used to send requests
+	private String httpClientType = HttpClientType.BLOCKING.getParameterValue();
+	
 	// internal members ------------------------------------------------------------------------------
 	
 	// Logger for tracing.
@@ -182,6 +213,27 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 			}
 			cfg.setReconnectionPolicyCount(reconnectionPolicyCount);
 		}
+		
+		if (reconnectionInitialDelay < 0) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "reconnectionInitialDelay", Long.toString(reconnectionInitialDelay)));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+		if (reconnectionBackoffMultiplier < 1.0) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "reconnectionBackoffMultiplier", Double.toString(reconnectionBackoffMultiplier)));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+		if (reconnectionMaxDelay < 0) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "reconnectionMaxDelay", Long.toString(reconnectionMaxDelay)));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+		if (reconnectionDeadline < 0) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "reconnectionDeadline", Long.toString(reconnectionDeadline)));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+		cfg.setReconnectionInitialDelay(reconnectionInitialDelay);
+		cfg.setReconnectionBackoffMultiplier(reconnectionBackoffMultiplier);
+		cfg.setReconnectionMaxDelay(reconnectionMaxDelay);
+		cfg.setReconnectionDeadline(reconnectionDeadline);
 
 		if (null != appConfig.get("sslEnabled")) {
 			cfg.setSslEnabled(Boolean.parseBoolean(appConfig.get("sslEnabled")));
@@ -274,6 +326,109 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 			cfg.setMaxConnectionIdleTime(maxConnectionIdleTime);
 		}
 		
+		if (null != appConfig.get("maxConnections")) {
+			String str = appConfig.get("maxConnections");
+			if (!StreamsHelper.isPositiveInteger(str) || Integer.parseInt(str) < 1) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "maxConnections", str));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setMaxConnections(Integer.parseInt(str));
+		} else {
+			if (maxConnections < 1) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "maxConnections", Integer.toString(maxConnections)));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setMaxConnections(maxConnections);
+		}
+		
+		if (null != appConfig.get("maxConnectionsPerNode")) {
+			String str = appConfig.get("maxConnectionsPerNode");
+			if (!StreamsHelper.isPositiveInteger(str)) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "maxConnectionsPerNode", str));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setMaxConnectionsPerNode(Integer.parseInt(str));
+		} else {
+			if (maxConnectionsPerNode < 0) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "maxConnectionsPerNode", Integer.toString(maxConnectionsPerNode)));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setMaxConnectionsPerNode(maxConnectionsPerNode);
+		}
+		
+		if (null != appConfig.get("nodeDiscoveryEnabled")) {
+			cfg.setNodeDiscoveryEnabled(Boolean.parseBoolean(appConfig.get("nodeDiscoveryEnabled")));
+		} else {
+			cfg.setNodeDiscoveryEnabled(nodeDiscoveryEnabled);
+		}
+		
+		if (null != appConfig.get("nodeDiscoveryInterval")) {
+			String str = appConfig.get("nodeDiscoveryInterval");
+			if (!StreamsHelper.isPositiveInteger(str) || Long.parseLong(str) < 1) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "nodeDiscoveryInterval", str));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setNodeDiscoveryInterval(Long.parseLong(str));
+		} else {
+			if (nodeDiscoveryInterval < 1) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "nodeDiscoveryInterval", Long.toString(nodeDiscoveryInterval)));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setNodeDiscoveryInterval(nodeDiscoveryInterval);
+		}
+		
+		if (null != appConfig.get("nodeDiscoveryFilter")) {
+			cfg.setNodeDiscoveryFilter(appConfig.get("nodeDiscoveryFilter"));
+		} else {
+			cfg.setNodeDiscoveryFilter(nodeDiscoveryFilter);
+		}
+		
+		String strategyName = (null != appConfig.get("nodeSelectionStrategy")) ? appConfig.get("nodeSelectionStrategy") : nodeSelectionStrategy;
+		NodeSelectionStrategy strategy = NodeSelectionStrategy.fromName(strategyName);
+		if (null == strategy) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "nodeSelectionStrategy", strategyName));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+		cfg.setNodeSelectionStrategy(strategy);
+		
+		if (null != appConfig.get("circuitBreakerFailureThreshold")) {
+			String str = appConfig.get("circuitBreakerFailureThreshold");
+			if (!StreamsHelper.isPositiveInteger(str)) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "circuitBreakerFailureThreshold", str));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setCircuitBreakerFailureThreshold(Integer.parseInt(str));
+		} else {
+			if (circuitBreakerFailureThreshold < 0) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "circuitBreakerFailureThreshold", Integer.toString(circuitBreakerFailureThreshold)));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setCircuitBreakerFailureThreshold(circuitBreakerFailureThreshold);
+		}
+		
+		if (null != appConfig.get("circuitBreakerProbeInterval")) {
+			String str = appConfig.get("circuitBreakerProbeInterval");
+			if (!StreamsHelper.isPositiveInteger(str) || Long.parseLong(str) < 1) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "circuitBreakerProbeInterval", str));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setCircuitBreakerProbeInterval(Long.parseLong(str));
+		} else {
+			if (circuitBreakerProbeInterval < 1) {
+				logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "circuitBreakerProbeInterval", Long.toString(circuitBreakerProbeInterval)));
+				throw new RuntimeException("Parameter contains invalid value");
+			}
+			cfg.setCircuitBreakerProbeInterval(circuitBreakerProbeInterval);
+		}
+		
+		String clientTypeName = (null != appConfig.get("httpClientType")) ? appConfig.get("httpClientType") : httpClientType;
+		HttpClientType clientType = HttpClientType.fromName(clientTypeName);
+		if (null == clientType) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "httpClientType", clientTypeName));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+		cfg.setHttpClientType(clientType);
+		
 		return cfg;
 	}
 	
@@ -341,12 +496,46 @@ public class AbstractElasticsearchOperator extends AbstractOperator
     @Parameter(name="reconnectionPolicyCount", optional=true,
 		description="Specifies the number of reconnection attemps to th Elasticsearch server, upon disconnection. "
 	    + "If more than one node is specified in the 'nodeList' parameter, all remaining nodes are tried immediately, before the reconnection count starts. "
-		+ "If no node responds, the operator will wait for one second and try to reconnect to a node. During reconnection, nodes are tried in a round robin fashion."
+		+ "If no node responds, the operator will wait and try to reconnect to a node. During reconnection, nodes are tried in a round robin fashion. "
+		+ "The wait time is a random value between 0 and an upper bound, that grows exponentially, see the 'reconnectionInitialDelay' parameter. "
 		+ "This parameter can be overwritten by the application configuration. "
 	)
 	public void setReconnectionPolicyCount(int reconnectionPolicyCount) {
 		this.reconnectionPolicyCount = reconnectionPolicyCount;
 	}
+
+    @Parameter(name="reconnectionInitialDelay", optional=true,
+		description="Specifies the upper bound in milliseconds of the wait time before the first reconnection attempt. "
+		+ "The upper bound is multiplied by 'reconnectionBackoffMultiplier' for each further attempt, until it reaches 'reconnectionMaxDelay'. "
+		+ "The actual wait time is a random value between 0 and the upper bound, so operators that lost the connection at the same time "
+		+ "do not reconnect at the same time. The default value is 1000. "
+	)
+	public void setReconnectionInitialDelay(long reconnectionInitialDelay) {
+		this.reconnectionInitialDelay = reconnectionInitialDelay;
+	}
+
+    @Parameter(name="reconnectionBackoffMultiplier", optional=true,
+		description="Specifies the factor by which the upper bound of the wait time grows for each reconnection attempt. The value must not be less than 1. "
+		+ "The default value is 2.0. "
+	)
+	public void setReconnectionBackoffMultiplier(double reconnectionBackoffMultiplier) {
+		this.reconnectionBackoffMultiplier = reconnectionBackoffMultiplier;
+	}
+
+    @Parameter(name="reconnectionMaxDelay", optional=true,
+		description="Specifies the maximum upper bound in milliseconds of the wait time between reconnection attempts. The default value is 30000. "
+	)
+	public void setReconnectionMaxDelay(long reconnectionMaxDelay) {
+		this.reconnectionMaxDelay = reconnectionMaxDelay;
+	}
+
+    @Parameter(name="reconnectionDeadline", optional=true,
+		description="Specifies the time in milliseconds after which the operator stops the reconnection attempts for a request, even if "
+		+ "'reconnectionPolicyCount' is not reached. The default value is 0, which means the attempts are only limited by 'reconnectionPolicyCount'. "
+	)
+	public void setReconnectionDeadline(long reconnectionDeadline) {
+		this.reconnectionDeadline = reconnectionDeadline;
+	}
    
     @Parameter(name="userName", optional=true,
     	description="The username used for HTTP basic authentication. If parameter 'sslEnabled' is false, the username is transmitted in cleartext. "
@@ -445,10 +634,115 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 		this.maxConnectionIdleTime = maxConnectionIdleTime;
 	}
 
+    @Parameter(name="maxConnections", optional=true,
+      	description="The maximum number of concurrent connections to the cluster nodes. If the operator sends requests asynchronously, "
+      	+ "up to this number of requests are sent in parallel, distributed over the nodes of the cluster. "
+      	+ "The default value is 1. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+    @Parameter(name="maxConnectionsPerNode", optional=true,
+      	description="The maximum number of concurrent connections to a single cluster node. Requests are preferably sent to nodes that have not reached "
+      	+ "this limit. The default value is 0, which means the connections per node are only limited by the 'maxConnections' parameter. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setMaxConnectionsPerNode(int maxConnectionsPerNode) {
+		this.maxConnectionsPerNode = maxConnectionsPerNode;
+	}
+
+    @Parameter(name="nodeDiscoveryEnabled", optional=true,
+      	description="Enables the discovery of the cluster nodes. The nodes are requested periodically with the nodes info API of Elasticsearch, "
+      	+ "and requests are distributed over the discovered nodes instead of the nodes from the 'nodeList' parameter. "
+      	+ "The configured nodes are used to ask for the cluster nodes, if none of the discovered nodes responds. "
+      	+ "Use this if nodes are added to or removed from the cluster while the operator is running. "
+      	+ "Do not enable the discovery, if the cluster is accessed through a proxy or a load balancer, "
+      	+ "because the discovered addresses are the addresses the nodes publish within the cluster. "
+      	+ "The current number of nodes is available in the 'numNodes' metric. The default value is 'false'. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setNodeDiscoveryEnabled(boolean nodeDiscoveryEnabled) {
+		this.nodeDiscoveryEnabled = nodeDiscoveryEnabled;
+	}
+
+    @Parameter(name="nodeDiscoveryInterval", optional=true,
+      	description="The time in milliseconds between two node discoveries, if 'nodeDiscoveryEnabled' is true. The default value is 60000 (1 minute). "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setNodeDiscoveryInterval(long nodeDiscoveryInterval) {
+		this.nodeDiscoveryInterval = nodeDiscoveryInterval;
+	}
+
+    @Parameter(name="nodeDiscoveryFilter", optional=true,
+      	description="The node filter used for the node discovery, in the node specification syntax of the Elasticsearch cluster APIs. "
+      	+ "The default value is 'data:true,ingest:true', which selects all data and ingest nodes, so no documents are sent to dedicated master nodes. "
+      	+ "Use '_all' to select all nodes. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setNodeDiscoveryFilter(String nodeDiscoveryFilter) {
+		this.nodeDiscoveryFilter = nodeDiscoveryFilter;
+	}
+
+    @Parameter(name="nodeSelectionStrategy", optional=true,
+      	description="The strategy to choose the node for a bulk request, if more than one node is configured or discovered. "
+      	+ "With 'roundRobin' the nodes are used one after the other. "
+      	+ "With 'leastInFlight' the node with the fewest bulk requests in flight is used, this requires 'maxConnections' greater than 1. "
+      	+ "With 'latency' two nodes are chosen at random and the node with the lower expected latency is used, "
+      	+ "based on the average response time of the node and its bulk requests in flight, so a slow or overloaded node receives fewer requests. "
+      	+ "Failed requests count as slow responses, and a node that was avoided is tried again after some seconds. "
+      	+ "If a request fails on a node, it is retried on a node that did not fail for this request. "
+      	+ "The average latency and the failed requests per node are available in the 'bulkLatency_<node>' and 'failedRequests_<node>' metrics. "
+      	+ "The default value is 'roundRobin'. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setNodeSelectionStrategy(String nodeSelectionStrategy) {
+		this.nodeSelectionStrategy = nodeSelectionStrategy;
+	}
+
+    @Parameter(name="circuitBreakerFailureThreshold", optional=true,
+      	description="The number of consecutive failed bulk requests after which the circuit of a node opens. "
+      	+ "A request fails, if the node cannot be reached, or the node responds with a server error. "
+      	+ "No requests are sent to a node with open circuit, so a node that is down does not delay each bulk by the 'connectionTimeout'. "
+      	+ "A node with open circuit is probed with a 'HEAD /' request every 'circuitBreakerProbeInterval' milliseconds. "
+      	+ "If the probe succeeds, the circuit is half open and the next request is sent to the node as a single trial, other requests avoid the node until the trial completes: "
+      	+ "a successful request closes the circuit, a failed request opens it again. "
+      	+ "If the circuits of all nodes are open, the requests are still sent to the nodes. "
+      	+ "The circuit state of each node is available in the 'circuitState_<node>' metric. "
+      	+ "The value 0 disables the circuit breakers. The default value is 3. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+		this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+	}
+
+    @Parameter(name="circuitBreakerProbeInterval", optional=true,
+      	description="The time in milliseconds between two probes of a node with open circuit. The default value is 5000. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setCircuitBreakerProbeInterval(long circuitBreakerProbeInterval) {
+		this.circuitBreakerProbeInterval = circuitBreakerProbeInterval;
+	}
+
+    @Parameter(name="httpClientType", optional=true,
+      	description="The HTTP client used to send the requests. "
+      	+ "With 'blocking' the requests are sent with the HTTP client of the Jest library, one thread per connection waits for the response of a bulk. "
+      	+ "With 'async' the requests are sent with the Apache asynchronous HTTP client, a few I/O threads serve all connections "
+      	+ "and no thread waits for a response or a retry, so many bulks can be in flight with 'maxConnections' and 'maxInFlightBulks' greater than 1. "
+      	+ "Both clients support the same SSL, authentication, retry and node options. "
+      	+ "The 'async' client does not request compressed responses. "
+      	+ "The default value is 'blocking'. "
+        + "This parameter can be overwritten by the application configuration. "	
+    )
+	public void setHttpClientType(String httpClientType) {
+		this.httpClientType = httpClientType;
+	}
+
 	@Parameter(
 		name="appConfigName", optional = true,
 		description="Specifies the name of the application configuration that contains Elasticsearch connection related configuration parameters. The keys in the application configuration have the same name as the operator parameters. "
-		+ " The following keys are supported: userName, password, hostName, hostPort, nodeList, reconnectionPolicyCount, sslEnabled, sslDebug, sslTrustAllCertificates, sslVerifyHostname, sslTrustStore, sslTrustStorePassword. "
+		+ " The following keys are supported: userName, password, hostName, hostPort, nodeList, reconnectionPolicyCount, sslEnabled, sslDebug, sslTrustAllCertificates, sslVerifyHostname, sslTrustStore, sslTrustStorePassword, maxConnections, maxConnectionsPerNode, nodeDiscoveryEnabled, nodeDiscoveryInterval, nodeDiscoveryFilter, nodeSelectionStrategy, circuitBreakerFailureThreshold, circuitBreakerProbeInterval, httpClientType. "
 		+ " If a value is specified in the application configuration and as operator parameter, the application configuration parameter value takes precedence. "
 	)
 	public void setAppConfigName(String appConfigName) {
@@ -533,6 +827,10 @@ public class AbstractElasticsearchOperator extends AbstractOperator
 		}
 		this.totalFailedRequests.setValue(clientMetrics.getTotalFailedRequests());
 		this.reconnectionCount.setValue(clientMetrics.getReconnectionCount());
+		this.totalBackoffTime.setValue(clientMetrics.getBackoffTime());
+		this.numNodes.setValue(clientMetrics.getNumberOfNodes());
+		this.numNodeDiscoveries.setValue(clientMetrics.getNodeDiscoveries());
+		this.numFailedNodeDiscoveries.setValue(clientMetrics.getFailedNodeDiscoveries());
 	}  	
 	
     /**
@@ -568,5 +866,49 @@ public class AbstractElasticsearchOperator extends AbstractOperator
     public void setReconnectionCount(Metric reconnectionCount) {
     	this.reconnectionCount = reconnectionCount;
     }	
+    
+    /**
+     * totalBackoffTime metric describes the time spent waiting between retries.
+     * @param totalBackoffTime
+     */
+    @CustomMetric(name = "totalBackoffTime", kind = Metric.Kind.COUNTER,
+    	description = "The time in milliseconds the operator has waited before reconnection attempts and before sending rejected documents again."
+    )
+    public void setTotalBackoffTime(Metric totalBackoffTime) {
+    	this.totalBackoffTime = totalBackoffTime;
+    }
+    
+    /**
+     * numNodes metric describes the number of nodes requests are distributed to.
+     * @param numNodes
+     */
+    @CustomMetric(name = "numNodes", kind = Metric.Kind.GAUGE,
+    	description = "The number of cluster nodes the requests are distributed to. These are the configured nodes, or the discovered nodes if 'nodeDiscoveryEnabled' is true."
+    )
+    public void setNumNodes(Metric numNodes) {
+    	this.numNodes = numNodes;
+    }
+    
+    /**
+     * numNodeDiscoveries metric describes the number of successful node discoveries.
+     * @param numNodeDiscoveries
+     */
+    @CustomMetric(name = "numNodeDiscoveries", kind = Metric.Kind.COUNTER,
+    	description = "The number of successful node discoveries, see the 'nodeDiscoveryEnabled' parameter."
+    )
+    public void setNumNodeDiscoveries(Metric numNodeDiscoveries) {
+    	this.numNodeDiscoveries = numNodeDiscoveries;
+    }
+    
+    /**
+     * numFailedNodeDiscoveries metric describes the number of node discoveries that got no response.
+     * @param numFailedNodeDiscoveries
+     */
+    @CustomMetric(name = "numFailedNodeDiscoveries", kind = Metric.Kind.COUNTER,
+    	description = "The number of node discoveries that failed, because none of the nodes responded."
+    )
+    public void setNumFailedNodeDiscoveries(Metric numFailedNodeDiscoveries) {
+    	this.numFailedNodeDiscoveries = numFailedNodeDiscoveries;
+    }
 	
 }
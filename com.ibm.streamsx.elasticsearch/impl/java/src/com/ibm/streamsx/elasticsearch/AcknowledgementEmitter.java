@@ -0,0 +1,131 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingOutput;
+import com.ibm.streams.operator.state.ConsistentRegionContext;
+import com.ibm.streamsx.elasticsearch.client.AcknowledgementListener;
+import com.ibm.streamsx.elasticsearch.client.BulkAcknowledgement;
+
+/**
+ * Submits the acknowledgements of the server to the acknowledgement output port,
+ * either one tuple per indexed document or one summary tuple per bulk.
+ * The attributes of the output tuple are populated by name, attributes with other names keep their default values.
+ */
+class AcknowledgementEmitter extends PortEmitter<BulkAcknowledgement> implements AcknowledgementListener
+{
+	// names of the output attributes populated per document
+	static final String ID_ATTRIBUTE = "id";
+	static final String INDEX_ATTRIBUTE = "index";
+	static final String VERSION_ATTRIBUTE = "version";
+	static final String RESULT_ATTRIBUTE = "result";
+	static final String STATUS_ATTRIBUTE = "status";
+	// names of the output attributes populated per document and per bulk
+	static final String BULK_ID_ATTRIBUTE = "bulkId";
+	static final String LATENCY_ATTRIBUTE = "latency";
+	// names of the output attributes populated per bulk
+	static final String DOCUMENTS_ATTRIBUTE = "documents";
+	static final String INDEXED_DOCUMENTS_ATTRIBUTE = "indexedDocuments";
+	static final String FAILED_DOCUMENTS_ATTRIBUTE = "failedDocuments";
+
+	private static final int STATUS_CREATED = 201;
+
+	private final boolean perDocument;
+
+	// attributes present in the output schema
+	private final boolean hasId;
+	private final boolean hasIndex;
+	private final boolean hasVersion;
+	private final boolean hasResult;
+	private final boolean hasStatus;
+	private final boolean hasBulkId;
+	private final boolean hasLatency;
+	private final boolean hasDocuments;
+	private final boolean hasIndexedDocuments;
+	private final boolean hasFailedDocuments;
+
+	/**
+	 * @param port the acknowledgement port
+	 * @param capacity the maximum number of queued bulk acknowledgements
+	 * @param crContext the consistent region context, or null
+	 * @param perDocument true to submit a tuple per indexed document, false to submit a tuple per bulk
+	 */
+	AcknowledgementEmitter(StreamingOutput<OutputTuple> port, int capacity, ConsistentRegionContext crContext, boolean perDocument) {
+		super(port, capacity, crContext);
+		this.perDocument = perDocument;
+		StreamSchema schema = getStreamSchema();
+		hasId = hasAttribute(schema, ID_ATTRIBUTE);
+		hasIndex = hasAttribute(schema, INDEX_ATTRIBUTE);
+		hasVersion = hasAttribute(schema, VERSION_ATTRIBUTE);
+		hasResult = hasAttribute(schema, RESULT_ATTRIBUTE);
+		hasStatus = hasAttribute(schema, STATUS_ATTRIBUTE);
+		hasBulkId = hasAttribute(schema, BULK_ID_ATTRIBUTE);
+		hasLatency = hasAttribute(schema, LATENCY_ATTRIBUTE);
+		hasDocuments = hasAttribute(schema, DOCUMENTS_ATTRIBUTE);
+		hasIndexedDocuments = hasAttribute(schema, INDEXED_DOCUMENTS_ATTRIBUTE);
+		hasFailedDocuments = hasAttribute(schema, FAILED_DOCUMENTS_ATTRIBUTE);
+	}
+
+	@Override
+	public void bulkAcknowledged(BulkAcknowledgement acknowledgement) {
+		offer(acknowledgement);
+	}
+
+	@Override
+	protected void submit(StreamingOutput<OutputTuple> port, BulkAcknowledgement acknowledgement) throws Exception {
+		if (perDocument) {
+			for (int i = 0; i < acknowledgement.getIndexedDocuments(); i++) {
+				OutputTuple tuple = port.newTuple();
+				if (hasId && acknowledgement.getId(i) != null) {
+					tuple.setString(ID_ATTRIBUTE, acknowledgement.getId(i));
+				}
+				if (hasIndex && acknowledgement.getIndex(i) != null) {
+					tuple.setString(INDEX_ATTRIBUTE, acknowledgement.getIndex(i));
+				}
+				if (hasVersion) {
+					tuple.setLong(VERSION_ATTRIBUTE, acknowledgement.getVersion(i));
+				}
+				if (hasResult) {
+					tuple.setString(RESULT_ATTRIBUTE, (acknowledgement.getStatus(i) == STATUS_CREATED) ? "created" : "updated");
+				}
+				if (hasStatus) {
+					tuple.setInt(STATUS_ATTRIBUTE, acknowledgement.getStatus(i));
+				}
+				if (hasBulkId) {
+					tuple.setLong(BULK_ID_ATTRIBUTE, acknowledgement.getBulkId());
+				}
+				if (hasLatency) {
+					tuple.setLong(LATENCY_ATTRIBUTE, TimeUnit.NANOSECONDS.toMillis(acknowledgement.getLatencyNanos(i)));
+				}
+				port.submit(tuple);
+			}
+		} else {
+			OutputTuple tuple = port.newTuple();
+			if (hasBulkId) {
+				tuple.setLong(BULK_ID_ATTRIBUTE, acknowledgement.getBulkId());
+			}
+			if (hasLatency) {
+				tuple.setLong(LATENCY_ATTRIBUTE, TimeUnit.NANOSECONDS.toMillis(acknowledgement.getLatencyNanos()));
+			}
+			if (hasDocuments) {
+				tuple.setInt(DOCUMENTS_ATTRIBUTE, acknowledgement.getDocuments());
+			}
+			if (hasIndexedDocuments) {
+				tuple.setInt(INDEXED_DOCUMENTS_ATTRIBUTE, acknowledgement.getIndexedDocuments());
+			}
+			if (hasFailedDocuments) {
+				tuple.setInt(FAILED_DOCUMENTS_ATTRIBUTE, acknowledgement.getFailedDocuments());
+			}
+			port.submit(tuple);
+		}
+	}
+}
@@ -7,15 +7,21 @@
 
 package com.ibm.streamsx.elasticsearch;
 
+import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
-import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.Attribute;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.StreamSchema;
@@ -32,16 +38,28 @@ import com.ibm.streams.operator.model.InputPortSet;
 import com.ibm.streams.operator.model.InputPortSet.WindowMode;
 import com.ibm.streams.operator.model.InputPortSet.WindowPunctuationInputMode;
 import com.ibm.streams.operator.model.InputPorts;
+import com.ibm.streams.operator.model.OutputPortSet;
+import com.ibm.streams.operator.model.OutputPortSet.WindowPunctuationOutputMode;
+import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.model.PrimitiveOperator;
 import com.ibm.streams.operator.state.Checkpoint;
 import com.ibm.streams.operator.state.ConsistentRegionContext;
 import com.ibm.streams.operator.state.StateHandler;
+import com.ibm.streamsx.elasticsearch.client.AdaptiveBulkSizer;
+import com.ibm.streamsx.elasticsearch.client.BulkListener;
+import com.ibm.streamsx.elasticsearch.client.BulkStatistics;
 import com.ibm.streamsx.elasticsearch.client.Client;
 import com.ibm.streamsx.elasticsearch.client.ClientMetrics;
 import com.ibm.streamsx.elasticsearch.client.Configuration;
+import com.ibm.streamsx.elasticsearch.client.FailedDocument;
 import com.ibm.streamsx.elasticsearch.client.JESTClient;
 import com.ibm.streamsx.elasticsearch.i18n.Messages;
+import com.ibm.streamsx.elasticsearch.serializer.ContentFormat;
+import com.ibm.streamsx.elasticsearch.serializer.DocumentValidator;
+import com.ibm.streamsx.elasticsearch.serializer.DocumentWriter;
+import com.ibm.streamsx.elasticsearch.serializer.TimestampFormat;
+import com.ibm.streamsx.elasticsearch.serializer.TupleSerializer;
 import com.ibm.streamsx.elasticsearch.util.StreamsHelper;
 
 @PrimitiveOperator(name="ElasticsearchIndex", namespace="com.ibm.streamsx.elasticsearch", description=
@@ -58,11 +76,41 @@ import com.ibm.streamsx.elasticsearch.util.StreamsHelper;
 		windowingMode=WindowMode.NonWindowed,
 		windowPunctuationInputMode=WindowPunctuationInputMode.Oblivious)
 })
+@OutputPorts({@OutputPortSet(
+		id="0",
+		description=ElasticsearchIndex.oport0Description,
+		cardinality=1,
+		optional=true,
+		windowPunctuationOutputMode=WindowPunctuationOutputMode.Free),
+	@OutputPortSet(
+		id="1",
+		description=ElasticsearchIndex.oport1Description,
+		cardinality=1,
+		optional=true,
+		windowPunctuationOutputMode=WindowPunctuationOutputMode.Free)
+})
 public class ElasticsearchIndex extends AbstractElasticsearchOperator implements StateHandler
 {
 	// operator parameter members --------------------------------------------------------------------------- 
 	
 	private int bulkSize = 1;
+	private long bulkSizeBytes = 0;
+	private long flushInterval = 0;
+	private long maxDocumentAge = 0;
+	private boolean adaptiveBulkSize = false;
+	private long targetBulkLatency = 1000;
+	private int maxInFlightBulks = 0;
+	private int maxItemRetries = 3;
+	private long itemRetryDelay = 100;
+	private boolean requestCompression = false;
+	private int compressionLevel = 6;
+	private String contentFormatName = "json";
+	private int failedDocumentsQueueSize = 10000;
+	private String acknowledgementMode = "document";
+	private int acknowledgementQueueSize = 1000;
+	private String spillDirectory = null;
+	private long spillMaxSize = 1024L * 1024L * 1024L;
+	private int drainParallelism = 1;
 	
 	private String indexName;
 	private TupleAttribute<Tuple, String> indexNameAttribute;
@@ -75,10 +123,17 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 	
 	private boolean storeTimestamps = false;	
 	private String timestampName = "timestamp";
+	private String timestampFormatName = "date_time";
+	private TimestampFormat timestampFormat = TimestampFormat.DATE_TIME;
 	private TupleAttribute<Tuple, Long> timestampValueAttribute;
 	
-	// the input stream attribute name, that contains JSON document as string
-	private TupleAttribute<Tuple, String> documentAttribute;	
+	// the input stream attribute name, that contains the document as rstring, ustring or blob
+	private TupleAttribute<Tuple, ?> documentAttribute;	
+	private boolean documentValidation = false;
+	
+	// string attributes whose encoded values are cached, and the maximum number of values per attribute
+	private List<TupleAttribute<Tuple, String>> valueCacheAttributes = null;
+	private int valueCacheSize = 0;
 	
 	// internal members -------------------------------------------------------------------------------------
 	
@@ -95,12 +150,90 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 	private Configuration config = null;
 	private ClientMetrics clientMetrics = null;
 	
+	/**
+	 * Serialization plan for the input tuples, and the document buffer reused by each thread calling process()
+	 */
+	private TupleSerializer serializer = null;
+	private ContentFormat contentFormat = ContentFormat.JSON;
+	private final ThreadLocal<DocumentWriter> documents = new ThreadLocal<DocumentWriter>() {
+		@Override
+		protected DocumentWriter initialValue() {
+			return contentFormat.createWriter(1024);
+		}
+	};
+	
+	/**
+	 * The pending bulk is shared by the tuple thread and the background flusher, 
+	 * all access to the bulk and the client is guarded by this lock
+	 */
+	private final Object bulkLock = new Object();
+	private long bulkStartTime = 0;
+	private long lastSendTime = 0;
+	// false in a consistent region if the 'bulkSize' parameter is not set, then the bulk is not limited by the number of documents
+	private boolean bulkSizeLimited = true;
+	// the failed requests and incomplete bulks counted when the current consistent region period started, a drain fails if they grew since then
+	private long regionFailedRequests = 0;
+	private long regionIncompleteBulks = 0;
+	private ScheduledFuture<?> flusher = null;
+	
+	/**
+	 * Adjusts the bulk size targets, if adaptive bulk sizing is enabled
+	 */
+	private AdaptiveBulkSizer bulkSizer = null;
+	
+	/**
+	 * Submits the failed documents to the optional output port
+	 */
+	private FailedDocumentEmitter failedDocumentEmitter = null;
+	
+	// position and type of the document attribute, the document bytes are read without decoding
+	private int documentIndex = -1;
+	private MetaType documentType = null;
+	private boolean validateDocuments = false;
+	private final ThreadLocal<DocumentValidator> documentValidators = new ThreadLocal<DocumentValidator>() {
+		@Override
+		protected DocumentValidator initialValue() {
+			return new DocumentValidator();
+		}
+	};
+	
+	/**
+	 * Submits the acknowledgements to the optional second output port
+	 */
+	private AcknowledgementEmitter acknowledgementEmitter = null;
+	
 	private ConsistentRegionContext crContext;
 	
 	/**
 	 * Metrics
 	 */
 	private Metric numInserts;
+	private Metric currentBulkSizeBytes;
+	private Metric targetBulkSize;
+	private Metric targetBulkSizeBytes;
+	private Metric inFlightBulks;
+	private Metric numRetriedDocuments;
+	private Metric numFailedDocuments;
+	private Metric numBytesSent;
+	private Metric numCompressedBytesSent;
+	private Metric numFailedDocumentsDropped;
+	private Metric numAcknowledgementsDropped;
+	private Metric spillQueueBulks;
+	private Metric spillQueueBytes;
+	private Metric numSpilledBulks;
+	private Metric numReplayedBulks;
+	private Metric lastDrainDocuments;
+	private Metric lastDrainBytes;
+	private Metric lastDrainTime;
+	private Metric lastDrainParallelism;
+	private Metric numFailedDrains;
+	private Metric numInvalidDocuments;
+	private Metric valueCacheHits;
+	private Metric valueCacheMisses;
+	private Metric valueCacheHitRate;
+	private Metric valueCacheEntries;
+	// metrics per node by metric name, created when a node is used for the first time
+	private final Map<String, Metric> nodeMetrics = new ConcurrentHashMap<String, Metric>();
 	
 	/**
      * Initialize this operator and create Elasticsearch client to send get requests to.
@@ -115,14 +248,110 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
         // get CR context
         crContext = context.getOptionalContext(ConsistentRegionContext.class);
         
+        checkNotNegative("bulkSizeBytes", bulkSizeBytes);
+        checkNotNegative("flushInterval", flushInterval);
+        checkNotNegative("maxDocumentAge", maxDocumentAge);
+        checkPositive("targetBulkLatency", targetBulkLatency);
+        checkNotNegative("maxInFlightBulks", maxInFlightBulks);
+        checkNotNegative("maxItemRetries", maxItemRetries);
+        checkNotNegative("itemRetryDelay", itemRetryDelay);
+        checkPositive("failedDocumentsQueueSize", failedDocumentsQueueSize);
+        checkPositive("acknowledgementQueueSize", acknowledgementQueueSize);
+        checkPositive("spillMaxSize", spillMaxSize);
+        checkPositive("drainParallelism", drainParallelism);
+        checkNotNegative("valueCacheSize", valueCacheSize);
+        if (valueCacheAttributes != null && !context.getParameterNames().contains("valueCacheSize")) {
+        	valueCacheSize = 1000;
+        }
+        if (!"document".equals(acknowledgementMode) && !"bulk".equals(acknowledgementMode)) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "acknowledgementMode", acknowledgementMode));
+			throw new RuntimeException("Parameter contains invalid value");
+        }
+        if (compressionLevel < 1 || compressionLevel > 9) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "compressionLevel", Integer.toString(compressionLevel)));
+			throw new RuntimeException("Parameter contains invalid value");
+        }
+        timestampFormat = TimestampFormat.fromName(timestampFormatName);
+        if (timestampFormat == null) {
+        	logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "timestampFormat", timestampFormatName));
+        	throw new RuntimeException("Parameter contains invalid value");
+        }
+        if (documentAttribute != null) {
+        	Attribute attr = documentAttribute.getAttribute();
+        	documentIndex = attr.getIndex();
+        	documentType = attr.getType().getMetaType();
+        	if (documentType != MetaType.RSTRING && documentType != MetaType.BSTRING && documentType != MetaType.USTRING && documentType != MetaType.BLOB) {
+        		logger.error(Messages.getString("ELASTICSEARCH_WRONG_ATTR_TYPE", attr.getName(), "rstring, ustring, blob"));
+        		throw new RuntimeException("Input attribute has wrong type");
+        	}
+        }
+        contentFormat = ContentFormat.fromName(contentFormatName);
+        if (contentFormat == null || (contentFormat != ContentFormat.JSON && documentType != null && documentType != MetaType.BLOB)) {
+        	// documents from string attributes are JSON and cannot be mixed with other formats
+        	logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", "contentFormat", contentFormatName));
+        	throw new RuntimeException("Parameter contains invalid value");
+        }
+        validateDocuments = documentValidation && documentAttribute != null && contentFormat == ContentFormat.JSON;
+        
+        // failed documents are submitted to the optional output port
+        if (context.getNumberOfStreamingOutputs() > 0) {
+        	failedDocumentEmitter = new FailedDocumentEmitter(context.getStreamingOutputs().get(0), failedDocumentsQueueSize, crContext);
+        	if (contentFormat != ContentFormat.JSON && failedDocumentEmitter.hasTextDocument()) {
+        		// binary documents cannot be converted to a string
+        		logger.error(Messages.getString("ELASTICSEARCH_WRONG_ATTR_TYPE", FailedDocumentEmitter.DOCUMENT_ATTRIBUTE, MetaType.BLOB.toString()));
+        		throw new RuntimeException("Output attribute has wrong type");
+        	}
+        }
+        // acknowledgements are submitted to the optional second output port
+        if (context.getNumberOfStreamingOutputs() > 1) {
+        	acknowledgementEmitter = new AcknowledgementEmitter(context.getStreamingOutputs().get(1), acknowledgementQueueSize, crContext, "document".equals(acknowledgementMode));
+        }
+        
         // Construct new client config and metrics objects
         config = getClientConfiguration();
+        // in a consistent region bulks are sent synchronously, so every document received before a drain is indexed when the drain completes
+        if (!isConsistentRegion()) {
+        	config.setMaxInFlightBulks(maxInFlightBulks);
+        }
+        // the default bulk size of 1 would send each document on its own, so a consistent region collects the documents until the drain,
+        // unless a bulk size is set explicitly
+        if (isConsistentRegion() && !context.getParameterNames().contains("bulkSize")) {
+        	bulkSizeLimited = false;
+        }
+        config.setMaxItemRetries(maxItemRetries);
+        config.setItemRetryDelay(itemRetryDelay);
+        config.setRequestCompression(requestCompression);
+        config.setCompressionLevel(compressionLevel);
+        config.setContentFormat(contentFormat);
+        // in a consistent region a bulk must be indexed before the drain completes, it cannot wait on disk
+        if (spillDirectory != null && !isConsistentRegion()) {
+        	config.setSpillDirectory(getSpillDirectory(context).getPath());
+        	config.setSpillMaxSize(spillMaxSize);
+        }
         logger.info(config.toString());
         clientMetrics = ClientMetrics.getClientMetrics();
 
         // create client 
         client = new JESTClient(config, clientMetrics);
         client.setLogger(logger);
+        client.setThreadFactory(context.getThreadFactory());
+        
+        // the configured bulk sizes become the upper bounds of the adaptive targets
+        if (adaptiveBulkSize && !isConsistentRegion()) {
+        	bulkSizer = new AdaptiveBulkSizer(bulkSize, bulkSizeBytes, targetBulkLatency);
+        	logger.info(bulkSizer.toString());
+        }
+        
+        // bulks may complete on a sender thread, so the metrics are updated when a bulk is completed 
+        client.setBulkListener(new BulkListener() {
+        	@Override
+        	public void bulkCompleted(BulkStatistics statistics) {
+        		if (bulkSizer != null) {
+        			bulkSizer.bulkCompleted(statistics);
+        		}
+        		updateClientMetrics();
+        	}
+        });
         
         // validate configuration, if this fails we stop the operator
         if (!client.validateConfiguration()) {
@@ -136,7 +365,99 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
         	throw new RuntimeException("Client initialization failed");
         }
         
+        if (failedDocumentEmitter != null) {
+        	client.setFailedDocumentListener(failedDocumentEmitter);
+        	failedDocumentEmitter.start(context.getThreadFactory());
+        }
+        if (acknowledgementEmitter != null) {
+        	client.setAcknowledgementListener(acknowledgementEmitter, "document".equals(acknowledgementMode));
+        	acknowledgementEmitter.start(context.getThreadFactory());
+        }
+        
+        // build the serialization plan for the input port schema
+        if (documentAttribute == null) {
+        	serializer = createSerializer(context.getStreamingInputs().get(0).getStreamSchema());
+        }
+        
         updateMetrics(clientMetrics);
+        
+        // start the background flusher, in a consistent region bulks are sent on drain only
+        lastSendTime = System.nanoTime();
+        if ((flushInterval > 0 || maxDocumentAge > 0) && !isConsistentRegion()) {
+        	long checkPeriod = Math.max(10, minPositive(flushInterval, maxDocumentAge) / 10);
+        	flusher = context.getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
+        		@Override
+        		public void run() {
+        			flushIfDue();
+        		}
+        	}, checkPeriod, checkPeriod, TimeUnit.MILLISECONDS);
+        }
+	}
+
+	// relative paths are resolved against the data directory, each operator has an own subdirectory
+	private File getSpillDirectory(OperatorContext context) {
+		File directory = new File(spillDirectory);
+		if (!directory.isAbsolute()) {
+			directory = new File(context.getPE().getDataDirectory(), spillDirectory);
+		}
+		return new File(directory, context.getName().replaceAll("[^A-Za-z0-9._-]", "_"));
+	}
+
+	private static void checkNotNegative(String parameterName, long value) {
+		if (value < 0) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", parameterName, Long.toString(value)));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+	}
+
+	private static void checkPositive(String parameterName, long value) {
+		if (value <= 0) {
+			logger.error(Messages.getString("ELASTICSEARCH_INVALID_PARAMETER_VALUE", parameterName, Long.toString(value)));
+			throw new RuntimeException("Parameter contains invalid value");
+		}
+	}
+
+	private static long minPositive(long a, long b) {
+		if (a <= 0) return b;
+		if (b <= 0) return a;
+		return Math.min(a, b);
+	}
+
+	/**
+	 * Create the serialization plan. Attributes used for index, type, id and timestamp values,
+	 * and an attribute named like the timestamp field, do not become document fields.
+	 * @param schema the input port schema
+	 * @return the serialization plan
+	 */
+	private TupleSerializer createSerializer(StreamSchema schema) {
+		Set<String> excluded = new HashSet<String>();
+		if (indexNameAttribute != null) {
+			excluded.add(indexNameAttribute.getAttribute().getName());
+		}
+		if (typeNameAttribute != null) {
+			excluded.add(typeNameAttribute.getAttribute().getName());
+		}
+		if (idNameAttribute != null) {
+			excluded.add(idNameAttribute.getAttribute().getName());
+		}
+		String timestampAttribute = null;
+		if (timestampValueAttribute != null) {
+			timestampAttribute = timestampValueAttribute.getAttribute().getName();
+			excluded.add(timestampAttribute);
+		}
+		if (storeTimestamps) {
+			// the timestamp field replaces an attribute with the same name, a document must not contain a field twice
+			excluded.add(timestampName);
+		}
+		Set<String> cached = null;
+		if (valueCacheAttributes != null) {
+			cached = new HashSet<String>();
+			for (TupleAttribute<Tuple, String> attr : valueCacheAttributes) {
+				cached.add(attr.getAttribute().getName());
+			}
+		}
+		return TupleSerializer.create(schema, excluded, storeTimestamps ? timestampName : null, timestampAttribute, timestampFormat, contentFormat,
+				cached, valueCacheSize);
 	}
 
 	/**
@@ -152,56 +473,6 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
      */
     @Override
     public void process(StreamingInput<Tuple> stream, Tuple tuple) throws Exception {
-    	String source = null;
-    	if (documentAttribute != null) {
-    		source = documentAttribute.getValue(tuple);
-    	}
-        else {
-	    	// Get attribute names.
-			StreamSchema schema = tuple.getStreamSchema();
-	    	Set<String> attributeNames = schema.getAttributeNames();
-	    	
-	    	// Add attribute names/values to jsonDocuments.
-	    	JSONObject jsonDocuments = new JSONObject();
-	    	for(String attributeName : attributeNames) {
-	    		
-	    		// Skip attributes used explicitly for defining index, type, id, and timestamps.
-	    		if (indexNameAttribute != null && indexNameAttribute.getAttribute().getName().equals(attributeName)) {
-	    			continue;
-	    		} else if (typeNameAttribute != null && typeNameAttribute.getAttribute().getName().equals(attributeName)) {
-	    			continue;
-	    		} else if (idNameAttribute != null && idNameAttribute.getAttribute().getName().equals(attributeName)) {
-	    			continue;
-	    		} else if (timestampValueAttribute != null && timestampValueAttribute.getAttribute().getName().equals(attributeName)) {
-	    			continue;
-	    		}
-	    		
-	    		if (schema.getAttribute(attributeName).getType().getMetaType() == Type.MetaType.RSTRING) {
-	    			jsonDocuments.put(attributeName, tuple.getObject(attributeName).toString());
-	    		} else {
-	    			jsonDocuments.put(attributeName, tuple.getObject(attributeName));
-	    		}
-	    	}
-	    	
-	    	// Add timestamp, if enabled.
-	    	if (storeTimestamps) {
-	    		DateFormat df = new SimpleDateFormat("yyyy'-'MM'-'dd'T'HH':'mm':'ss.SSSZZ");
-	    		
-	    		String timestampToInsert;
-	    		if (timestampValueAttribute != null) {
-	    			long timestamp = getTimestampValue(tuple).longValue();
-	    			timestampToInsert = df.format(new Date(timestamp));
-	    		} else {
-	    			timestampToInsert = df.format(new Date(System.currentTimeMillis()));
-	    		}
-	    		
-	    		jsonDocuments.put(timestampName, timestampToInsert);
-	    	}
-	    	
-	    	// build json string
-	    	source = jsonDocuments.toString();
-    	}
-
     	// Get index, type, and ID.
     	String indexToInsert = getIndex(tuple);
     	String typeToInsert = getType(tuple);
@@ -212,14 +483,136 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
     		return;
     	}
     	
-    	client.bulkIndexAddDocument(source,indexToInsert,typeToInsert,idToInsert);
-    	currentBulkSize++;
+    	// process() may be called by several threads, each thread has its own document buffer and validator
+    	ByteBuffer source = null;
+    	DocumentWriter document = null;
+    	if (documentAttribute != null) {
+    		source = getDocument(tuple);
+    		if (validateDocuments) {
+    			String error = documentValidators.get().validate(source);
+    			if (error != null) {
+    				rejectDocument(source, indexToInsert, typeToInsert, idToInsert, error);
+    				return;
+    			}
+    		}
+    	}
+        else {
+	    	// walk the precompiled serialization plan, the document buffer is reused for each tuple
+	    	document = documents.get();
+	    	document.reset();
+	    	serializer.serialize(tuple, document);
+    	}
     	
-    	// send bulk if needed
-    	if ((currentBulkSize == bulkSize) && (!isConsistentRegion())) {
-    		client.bulkIndexSend();
-    		currentBulkSize = 0;
-    		updateMetrics(clientMetrics);
+    	synchronized (bulkLock) {
+	    	if (source != null) {
+	    		client.bulkIndexAddDocument(source,indexToInsert,typeToInsert,idToInsert);
+	    	} else {
+	    		client.bulkIndexAddDocument(document.getBuffer(),0,document.size(),indexToInsert,typeToInsert,idToInsert);
+	    	}
+	    	if (currentBulkSize == 0) {
+	    		bulkStartTime = System.nanoTime();
+	    	}
+	    	currentBulkSize++;
+	    	
+	    	// send bulk if the document count or the byte size limit is reached, in a consistent region the remaining documents are sent on drain
+	    	int bulkBytes = client.getBulkSizeInBytes();
+	    	if ((bulkSizeLimited && currentBulkSize >= getTargetBulkSize()) || (getTargetBulkSizeBytes() > 0 && bulkBytes >= getTargetBulkSizeBytes())) {
+	    		sendBulk();
+	    	} else {
+	    		currentBulkSizeBytes.setValue(bulkBytes);
+	    	}
+    	}
+    }
+    
+    /**
+     * @return the bytes of the document attribute. rstring and blob values are returned as view of their bytes,
+     * so they are copied into the bulk without decoding, only ustring values have to be encoded.
+     */
+    private ByteBuffer getDocument(Tuple tuple) {
+    	switch (documentType) {
+    	case BLOB:
+    		return tuple.getBlob(documentIndex).getByteBuffer();
+    	case USTRING:
+    		return ByteBuffer.wrap(tuple.getString(documentIndex).getBytes(StandardCharsets.UTF_8));
+    	default:
+    		return tuple.getRString(documentIndex).getByteBuffer();
+    	}
+    }
+    
+    /**
+     * count and log a document that failed the validation, and submit it to the optional output port
+     */
+    private void rejectDocument(ByteBuffer source, String index, String type, String id, String error) {
+    	numInvalidDocuments.increment();
+    	logger.warn("Invalid document not indexed, index = " + index + ", id = " + id + ": " + error);
+    	if (failedDocumentEmitter != null) {
+    		byte[] bytes = new byte[source.remaining()];
+    		source.duplicate().get(bytes);
+    		failedDocumentEmitter.documentFailed(new FailedDocument(index, type, id, bytes, 0, error));
+    	}
+    }
+    
+    // the configured bulk size, or the current target of the adaptive bulk sizing
+    private int getTargetBulkSize() {
+    	return (bulkSizer != null) ? bulkSizer.getTargetDocuments() : bulkSize;
+    }
+    
+    private long getTargetBulkSizeBytes() {
+    	return (bulkSizer != null) ? bulkSizer.getTargetBytes() : bulkSizeBytes;
+    }
+    
+    /**
+     * Send the pending bulk and reset the bulk state. Must be called with the bulk lock held.
+     */
+    private void sendBulk() {
+		client.bulkIndexSend();
+		currentBulkSize = 0;
+		lastSendTime = System.nanoTime();
+		updateMetrics(clientMetrics);
+    }
+    
+    /**
+     * Send the pending bulk split into sub-bulks, that are sent in parallel, and wait until they are completed. Must be called with the bulk lock held.
+     */
+    private void sendBulkParallel(int parallelism) {
+    	client.bulkIndexSendParallel(parallelism);
+    	currentBulkSize = 0;
+    	lastSendTime = System.nanoTime();
+    	updateMetrics(clientMetrics);
+    }
+    
+    /**
+     * Send the pending bulk and wait until all bulks in flight are completed. Must be called with the bulk lock held.
+     */
+    private void sendBulkAndWait() {
+    	sendBulk();
+    	client.waitForPendingBulks();
+    	updateMetrics(clientMetrics);
+    }
+    
+    /**
+     * Called by the background flusher. Sends the pending bulk, if the flush interval has passed since the last
+     * send, or if the first document in the bulk is older than the maximum document age.
+     */
+    private void flushIfDue() {
+    	try {
+	    	synchronized (bulkLock) {
+	    		if (currentBulkSize == 0) {
+	    			return;
+	    		}
+	    		long now = System.nanoTime();
+	    		boolean intervalPassed = (flushInterval > 0) && (now - lastSendTime >= TimeUnit.MILLISECONDS.toNanos(flushInterval));
+	    		boolean documentExpired = (maxDocumentAge > 0) && (now - bulkStartTime >= TimeUnit.MILLISECONDS.toNanos(maxDocumentAge));
+	    		if (intervalPassed || documentExpired) {
+	    			if (logger.isDebugEnabled()) {
+	    				logger.debug("Background flush of bulk with " + currentBulkSize + " documents, interval passed = " + intervalPassed + ", document expired = " + documentExpired);
+	    			}
+	    			sendBulk();
+	    		}
+	    	}
+    	} catch (Exception e) {
+    		// do not let the exception cancel the scheduled flusher
+    		logger.error("Background flush failed, message: " + e.getMessage());
     	}
     }
     
@@ -232,18 +625,73 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 		}
 		else {
 			if (punct == Punctuation.FINAL_MARKER) {
-				client.bulkIndexSend();
-				currentBulkSize = 0;
-	    		updateMetrics(clientMetrics);				
+				synchronized (bulkLock) {
+					sendBulkAndWait();
+				}
+				// all failed documents and acknowledgements must be submitted before the final punctuation is forwarded
+				flushOutputPorts();
 			}
 			super.processPunctuation(arg0, punct);
 		}
 	}    
 
+	private void flushOutputPorts() throws Exception {
+		if (failedDocumentEmitter != null) {
+			failedDocumentEmitter.flush();
+		}
+		if (acknowledgementEmitter != null) {
+			acknowledgementEmitter.flush();
+		}
+		updateClientMetrics();
+	}
+
 	protected void updateMetrics (ClientMetrics clientMetrics) {
+		updateClientMetrics();
+		this.currentBulkSizeBytes.setValue(client.getBulkSizeInBytes());
+		if (serializer != null) {
+			long hits = serializer.getValueCacheHits();
+			long misses = serializer.getValueCacheMisses();
+			this.valueCacheHits.setValue(hits);
+			this.valueCacheMisses.setValue(misses);
+			this.valueCacheHitRate.setValue((hits + misses > 0) ? hits * 100 / (hits + misses) : 0);
+			this.valueCacheEntries.setValue(serializer.getValueCacheEntries());
+		}
+	}
+	
+	// metrics that are updated by the client, this is called from the sender thread too
+	private void updateClientMetrics() {
 		super.updateMetrics(clientMetrics);
 		// handle numInserts metric here 
 		this.numInserts.setValue(clientMetrics.getNumInserts());
+		this.inFlightBulks.setValue(clientMetrics.getInFlightBulks());
+		this.numRetriedDocuments.setValue(clientMetrics.getRetriedItems());
+		this.numFailedDocuments.setValue(clientMetrics.getFailedItems());
+		this.numBytesSent.setValue(clientMetrics.getBytesSent());
+		this.numCompressedBytesSent.setValue(clientMetrics.getCompressedBytesSent());
+		if (failedDocumentEmitter != null) {
+			this.numFailedDocumentsDropped.setValue(failedDocumentEmitter.getDroppedItems());
+		}
+		if (acknowledgementEmitter != null) {
+			this.numAcknowledgementsDropped.setValue(acknowledgementEmitter.getDroppedItems());
+		}
+		this.spillQueueBulks.setValue(clientMetrics.getSpillQueueBulks());
+		this.spillQueueBytes.setValue(clientMetrics.getSpillQueueBytes());
+		this.numSpilledBulks.setValue(clientMetrics.getSpilledBulks());
+		this.numReplayedBulks.setValue(clientMetrics.getReplayedBulks());
+		for (Map.Entry<String, Integer> node : clientMetrics.getNodeInFlightBulks().entrySet()) {
+			getNodeMetric("inFlightBulks_", node.getKey(), "The number of bulk requests currently sent to node ", Metric.Kind.GAUGE).setValue(node.getValue());
+		}
+		for (Map.Entry<String, Long> node : clientMetrics.getNodeLatency().entrySet()) {
+			getNodeMetric("bulkLatency_", node.getKey(), "The average time in milliseconds until a bulk request is answered by node ", Metric.Kind.GAUGE).setValue(node.getValue());
+		}
+		for (Map.Entry<String, Long> node : clientMetrics.getNodeFailedRequests().entrySet()) {
+			getNodeMetric("failedRequests_", node.getKey(), "The number of bulk requests that failed with a connection error or a server error on node ", Metric.Kind.COUNTER).setValue(node.getValue());
+		}
+		for (Map.Entry<String, Integer> node : clientMetrics.getNodeCircuitState().entrySet()) {
+			getNodeMetric("circuitState_", node.getKey(), "The circuit state (0 closed, 1 half open, 2 open) of node ", Metric.Kind.GAUGE).setValue(node.getValue());
+		}
+		this.targetBulkSize.setValue(getTargetBulkSize());
+		this.targetBulkSizeBytes.setValue(getTargetBulkSizeBytes());
 	}    
     
 	/**
@@ -254,8 +702,18 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
     public synchronized void shutdown() throws Exception {
         OperatorContext context = getOperatorContext();
         logger.trace("Operator " + context.getName() + " shutting down in PE: " + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId() );
+        // stop background flusher
+        if (flusher != null) {
+        	flusher.cancel(false);
+        }
         // shutdown client
         client.close();
+        if (failedDocumentEmitter != null) {
+        	failedDocumentEmitter.shutdown();
+        }
+        if (acknowledgementEmitter != null) {
+        	acknowledgementEmitter.shutdown();
+        }
         super.shutdown();
     }
     
@@ -313,19 +771,6 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
     	return null;
     }
     
-    /**
-     * Get timestamp from either the timestampName or timestampValueAttribute. timestampValueAttribute 
-     * overrides timestampName.
-     * @param tuple
-     * @return
-     */
-    private Long getTimestampValue(Tuple tuple) {
-    	if (timestampValueAttribute != null) {
-    		return timestampValueAttribute.getValue(tuple);
-    	}
-    	return null;
-    }
-    
     // ConsistentRegion --------------------------------------------------------------------------------------
     
 	private boolean isConsistentRegion() {
@@ -338,8 +783,20 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 	private void reset() {
 		logger.debug("--> RESET currentBulkSize=" + currentBulkSize);
 		// reset members
-		currentBulkSize = 0;
-		client.reset();
+		synchronized (bulkLock) {
+			currentBulkSize = 0;
+			client.reset();
+		}
+		// failed and incomplete bulks of the previous period are replayed
+		regionFailedRequests = clientMetrics.getTotalFailedRequests();
+		regionIncompleteBulks = clientMetrics.getIncompleteBulks();
+		// the documents are replayed, so they will fail or be acknowledged again
+		if (failedDocumentEmitter != null) {
+			failedDocumentEmitter.clear();
+		}
+		if (acknowledgementEmitter != null) {
+			acknowledgementEmitter.clear();
+		}
 		logger.debug("<-- RESET");
 	}	
 
@@ -360,14 +817,45 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 		logger.debug("--> DRAIN currentBulkSize=" + currentBulkSize);
         long before = System.currentTimeMillis();
 
-    	// send bulk if needed
-    	client.bulkIndexSend();
-    	currentBulkSize = 0;
-    	updateMetrics(clientMetrics);
+    	// send bulk if needed, split into sub-bulks that are sent over different connections
+        int documents = 0;
+        int bytes = 0;
+        int parallelism = 0;
+    	synchronized (bulkLock) {
+    		documents = currentBulkSize;
+    		bytes = client.getBulkSizeInBytes();
+    		parallelism = Math.max(1, Math.min(Math.min(drainParallelism, config.getMaxConnections()), documents));
+    		sendBulkParallel(parallelism);
+    	}
+    	flushOutputPorts();
 
         long after = System.currentTimeMillis();
         final long duration = after - before;
-        logger.debug("<-- DRAIN took " + duration + " ms");	
+        this.lastDrainDocuments.setValue(documents);
+        this.lastDrainBytes.setValue(bytes);
+        this.lastDrainTime.setValue(duration);
+        this.lastDrainParallelism.setValue(parallelism);
+        logger.debug("<-- DRAIN took " + duration + " ms, documents = " + documents + ", bytes = " + bytes + ", parallelism = " + parallelism);
+        
+        // documents of bulks that could not be sent to any node are lost, unless the region is reset and the tuples are replayed.
+        // The bulks sent before the drain, when the bulk was full, are counted as well.
+        long failedRequests = clientMetrics.getTotalFailedRequests();
+        long failed = failedRequests - regionFailedRequests;
+        regionFailedRequests = failedRequests;
+        // the same applies to bulks that got an error response or whose items were still rejected after the last retry
+        long incompleteBulks = clientMetrics.getIncompleteBulks();
+        long incomplete = incompleteBulks - regionIncompleteBulks;
+        regionIncompleteBulks = incompleteBulks;
+        if (failed > 0) {
+        	this.numFailedDrains.increment();
+        	logger.error("Drain failed, bulk requests without response since the last drain = " + failed);
+        	throw new RuntimeException("Drain failed, bulks could not be sent");
+        }
+        if (incomplete > 0) {
+        	this.numFailedDrains.increment();
+        	logger.error("Drain failed, bulks with documents that were not indexed since the last drain = " + incomplete);
+        	throw new RuntimeException("Drain failed, bulks could not be indexed");
+        }
 	}
 
 	@Override
@@ -409,28 +897,51 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 		OperatorContext ctx = checker.getOperatorContext();
 		StreamSchema schema = ctx.getStreamingInputs().get(0).getStreamSchema();
 		
-		Set<String> attributeNames = schema.getAttributeNames();
+		// with a document attribute the other attributes are not serialized
+		Set<String> attributeNames = ctx.getParameterNames().contains("documentAttribute") ? new HashSet<String>() : schema.getAttributeNames();
 		for (String attrName : attributeNames) {
-			MetaType attrType = schema.getAttribute(attrName).getType().getMetaType();
-			if (!(
-					attrType == MetaType.BOOLEAN ||
-					attrType == MetaType.FLOAT32 ||
-					attrType == MetaType.FLOAT64 ||
-					attrType == MetaType.INT16   ||
-					attrType == MetaType.INT32   ||
-					attrType == MetaType.INT64   ||
-					attrType == MetaType.INT8    ||
-					attrType == MetaType.RSTRING ||
-					attrType == MetaType.USTRING ||
-					attrType == MetaType.UINT16  ||
-					attrType == MetaType.UINT32  ||
-					attrType == MetaType.UINT64  ||
-					attrType == MetaType.UINT8   ||
-					attrType == MetaType.BSTRING
-				)) {
-				checker.setInvalidContext(Messages.getString("ELASTICSEARCH_UNSUPPORTED_ATTR_TYPE", attrName, attrType.toString()), null );
+			Type attrType = schema.getAttribute(attrName).getType();
+			if (!TupleSerializer.isSupported(attrType)) {
+				checker.setInvalidContext(Messages.getString("ELASTICSEARCH_UNSUPPORTED_ATTR_TYPE", attrName, attrType.getLanguageType()), null );
+			}
+		}
+		
+		// check the types of the attributes populated in the optional output port
+		if (ctx.getNumberOfStreamingOutputs() > 0) {
+			StreamSchema outSchema = ctx.getStreamingOutputs().get(0).getStreamSchema();
+			checkOutputAttribute(checker, outSchema, FailedDocumentEmitter.DOCUMENT_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING, MetaType.BLOB);
+			checkOutputAttribute(checker, outSchema, FailedDocumentEmitter.INDEX_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING);
+			checkOutputAttribute(checker, outSchema, FailedDocumentEmitter.ID_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING);
+			checkOutputAttribute(checker, outSchema, FailedDocumentEmitter.STATUS_ATTRIBUTE, MetaType.INT32);
+			checkOutputAttribute(checker, outSchema, FailedDocumentEmitter.REASON_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING);
+		}
+		if (ctx.getNumberOfStreamingOutputs() > 1) {
+			StreamSchema ackSchema = ctx.getStreamingOutputs().get(1).getStreamSchema();
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.ID_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.INDEX_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.VERSION_ATTRIBUTE, MetaType.INT64);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.RESULT_ATTRIBUTE, MetaType.RSTRING, MetaType.USTRING);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.STATUS_ATTRIBUTE, MetaType.INT32);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.BULK_ID_ATTRIBUTE, MetaType.INT64);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.LATENCY_ATTRIBUTE, MetaType.INT64);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.DOCUMENTS_ATTRIBUTE, MetaType.INT32);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.INDEXED_DOCUMENTS_ATTRIBUTE, MetaType.INT32);
+			checkOutputAttribute(checker, ackSchema, AcknowledgementEmitter.FAILED_DOCUMENTS_ATTRIBUTE, MetaType.INT32);
+		}
+	}
+	
+	// an optional output attribute must have one of the given types, if it exists
+	private static void checkOutputAttribute(OperatorContextChecker checker, StreamSchema schema, String name, MetaType... types) {
+		if (schema.getAttribute(name) == null) {
+			return;
+		}
+		MetaType attrType = schema.getAttribute(name).getType().getMetaType();
+		for (MetaType type : types) {
+			if (attrType == type) {
+				return;
 			}
 		}
+		checker.setInvalidContext(Messages.getString("ELASTICSEARCH_WRONG_ATTR_TYPE", name, types[0].toString()), null );
 	}    
  
     // metrics ----------------------------------------------------------------------------------------------------------------
@@ -445,6 +956,269 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
     	this.numInserts = numInserts;
     }
     
+    /**
+     * currentBulkSizeBytes metric describes the size of the bulk that is currently filled.
+     * @param currentBulkSizeBytes
+     */
+    @CustomMetric(name = "currentBulkSizeBytes", kind = Metric.Kind.GAUGE,
+    		description = "The size in bytes of the request body of the bulk that is currently filled, including the bulk action metadata.")
+    public void setCurrentBulkSizeBytes(Metric currentBulkSizeBytes) {
+    	this.currentBulkSizeBytes = currentBulkSizeBytes;
+    }
+    
+    /**
+     * targetBulkSize metric describes the number of documents after which a bulk is submitted.
+     * @param targetBulkSize
+     */
+    @CustomMetric(name = "targetBulkSize", kind = Metric.Kind.GAUGE,
+    		description = "The number of documents after which the bulk is submitted. This is the 'bulkSize' parameter value, or the current target if 'adaptiveBulkSize' is enabled.")
+    public void setTargetBulkSize(Metric targetBulkSize) {
+    	this.targetBulkSize = targetBulkSize;
+    }
+    
+    /**
+     * targetBulkSizeBytes metric describes the size in bytes after which a bulk is submitted.
+     * @param targetBulkSizeBytes
+     */
+    @CustomMetric(name = "targetBulkSizeBytes", kind = Metric.Kind.GAUGE,
+    		description = "The size in bytes after which the bulk is submitted, 0 if the bulk is not limited by bytes. "
+    		+ "This is the 'bulkSizeBytes' parameter value, or the current target if 'adaptiveBulkSize' is enabled.")
+    public void setTargetBulkSizeBytes(Metric targetBulkSizeBytes) {
+    	this.targetBulkSizeBytes = targetBulkSizeBytes;
+    }
+    
+    /**
+     * inFlightBulks metric describes the number of bulks currently sent asynchronously.
+     * @param inFlightBulks
+     */
+    @CustomMetric(name = "inFlightBulks", kind = Metric.Kind.GAUGE,
+    		description = "The number of bulks handed over to the sender thread, that are not yet completed. See the 'maxInFlightBulks' parameter.")
+    public void setInFlightBulks(Metric inFlightBulks) {
+    	this.inFlightBulks = inFlightBulks;
+    }
+    
+    /**
+     * numRetriedDocuments metric describes the number of documents sent again after they were rejected.
+     * @param numRetriedDocuments
+     */
+    @CustomMetric(name = "numRetriedDocuments", kind = Metric.Kind.COUNTER,
+    		description = "The number of times a document was sent again, because the server rejected it temporarily. See the 'maxItemRetries' parameter.")
+    public void setNumRetriedDocuments(Metric numRetriedDocuments) {
+    	this.numRetriedDocuments = numRetriedDocuments;
+    }
+    
+    /**
+     * numFailedDocuments metric describes the number of documents that could not be indexed.
+     * @param numFailedDocuments
+     */
+    @CustomMetric(name = "numFailedDocuments", kind = Metric.Kind.COUNTER,
+    		description = "The number of documents that could not be indexed, because of a permanent error, because all retries were rejected, or because the bulk request failed.")
+    public void setNumFailedDocuments(Metric numFailedDocuments) {
+    	this.numFailedDocuments = numFailedDocuments;
+    }
+    
+    /**
+     * numBytesSent metric describes the size of the request bodies before compression.
+     * @param numBytesSent
+     */
+    @CustomMetric(name = "numBytesSent", kind = Metric.Kind.COUNTER,
+    		description = "The number of bytes of all bulk request bodies sent, before compression. Bulks sent again are counted again.")
+    public void setNumBytesSent(Metric numBytesSent) {
+    	this.numBytesSent = numBytesSent;
+    }
+    
+    /**
+     * numCompressedBytesSent metric describes the size of the request bodies on the wire.
+     * @param numCompressedBytesSent
+     */
+    @CustomMetric(name = "numCompressedBytesSent", kind = Metric.Kind.COUNTER,
+    		description = "The number of bytes of all bulk request bodies sent, after compression. If 'requestCompression' is not enabled, this is the same as 'numBytesSent'.")
+    public void setNumCompressedBytesSent(Metric numCompressedBytesSent) {
+    	this.numCompressedBytesSent = numCompressedBytesSent;
+    }
+    
+    /**
+     * numFailedDocumentsDropped metric describes the number of failed documents not submitted to the output port.
+     * @param numFailedDocumentsDropped
+     */
+    @CustomMetric(name = "numFailedDocumentsDropped", kind = Metric.Kind.COUNTER,
+    		description = "The number of failed documents that were not submitted to the optional output port, because the queue of the port was full. "
+    		+ "See the 'failedDocumentsQueueSize' parameter.")
+    public void setNumFailedDocumentsDropped(Metric numFailedDocumentsDropped) {
+    	this.numFailedDocumentsDropped = numFailedDocumentsDropped;
+    }
+    
+    /**
+     * numAcknowledgementsDropped metric describes the number of bulk acknowledgements not submitted to the output port.
+     * @param numAcknowledgementsDropped
+     */
+    @CustomMetric(name = "numAcknowledgementsDropped", kind = Metric.Kind.COUNTER,
+    		description = "The number of bulk acknowledgements that were not submitted to the optional acknowledgement port, because the queue of the port was full. "
+    		+ "See the 'acknowledgementQueueSize' parameter.")
+    public void setNumAcknowledgementsDropped(Metric numAcknowledgementsDropped) {
+    	this.numAcknowledgementsDropped = numAcknowledgementsDropped;
+    }
+    
+    /**
+     * spillQueueBulks metric describes the number of bulks waiting on disk.
+     * @param spillQueueBulks
+     */
+    @CustomMetric(name = "spillQueueBulks", kind = Metric.Kind.GAUGE,
+    		description = "The number of bulks in the spill queue, waiting to be sent. See the 'spillDirectory' parameter.")
+    public void setSpillQueueBulks(Metric spillQueueBulks) {
+    	this.spillQueueBulks = spillQueueBulks;
+    }
+    
+    /**
+     * spillQueueBytes metric describes the size of the bulks waiting on disk.
+     * @param spillQueueBytes
+     */
+    @CustomMetric(name = "spillQueueBytes", kind = Metric.Kind.GAUGE,
+    		description = "The size in bytes of the bulks in the spill queue. See the 'spillMaxSize' parameter.")
+    public void setSpillQueueBytes(Metric spillQueueBytes) {
+    	this.spillQueueBytes = spillQueueBytes;
+    }
+    
+    /**
+     * numSpilledBulks metric describes the number of bulks written to the spill queue.
+     * @param numSpilledBulks
+     */
+    @CustomMetric(name = "numSpilledBulks", kind = Metric.Kind.COUNTER,
+    		description = "The number of bulks written to the spill queue, because no node could be reached or because older bulks were waiting in the queue.")
+    public void setNumSpilledBulks(Metric numSpilledBulks) {
+    	this.numSpilledBulks = numSpilledBulks;
+    }
+    
+    /**
+     * numReplayedBulks metric describes the number of bulks sent from the spill queue.
+     * @param numReplayedBulks
+     */
+    @CustomMetric(name = "numReplayedBulks", kind = Metric.Kind.COUNTER,
+    		description = "The number of bulks from the spill queue that were answered by a node and removed from the queue.")
+    public void setNumReplayedBulks(Metric numReplayedBulks) {
+    	this.numReplayedBulks = numReplayedBulks;
+    }
+    
+    /**
+     * lastDrainDocuments metric describes the number of documents sent by the last drain.
+     * @param lastDrainDocuments
+     */
+    @CustomMetric(name = "lastDrainDocuments", kind = Metric.Kind.GAUGE,
+    		description = "The number of documents sent by the last drain of the consistent region.")
+    public void setLastDrainDocuments(Metric lastDrainDocuments) {
+    	this.lastDrainDocuments = lastDrainDocuments;
+    }
+    
+    /**
+     * lastDrainBytes metric describes the size of the documents sent by the last drain.
+     * @param lastDrainBytes
+     */
+    @CustomMetric(name = "lastDrainBytes", kind = Metric.Kind.GAUGE,
+    		description = "The size in bytes of the bulk request bodies sent by the last drain of the consistent region, before compression.")
+    public void setLastDrainBytes(Metric lastDrainBytes) {
+    	this.lastDrainBytes = lastDrainBytes;
+    }
+    
+    /**
+     * lastDrainTime metric describes the duration of the last drain.
+     * @param lastDrainTime
+     */
+    @CustomMetric(name = "lastDrainTime", kind = Metric.Kind.GAUGE,
+    		description = "The time in milliseconds the last drain of the consistent region took.")
+    public void setLastDrainTime(Metric lastDrainTime) {
+    	this.lastDrainTime = lastDrainTime;
+    }
+    
+    /**
+     * lastDrainParallelism metric describes the number of sub-bulks sent by the last drain.
+     * @param lastDrainParallelism
+     */
+    @CustomMetric(name = "lastDrainParallelism", kind = Metric.Kind.GAUGE,
+    		description = "The number of sub-bulks sent in parallel by the last drain of the consistent region. See the 'drainParallelism' parameter.")
+    public void setLastDrainParallelism(Metric lastDrainParallelism) {
+    	this.lastDrainParallelism = lastDrainParallelism;
+    }
+    
+    /**
+     * numFailedDrains metric describes the number of drains that failed.
+     * @param numFailedDrains
+     */
+    @CustomMetric(name = "numFailedDrains", kind = Metric.Kind.COUNTER,
+    		description = "The number of drains of the consistent region that failed, because a bulk could not be sent to any node.")
+    public void setNumFailedDrains(Metric numFailedDrains) {
+    	this.numFailedDrains = numFailedDrains;
+    }
+    
+    /**
+     * numInvalidDocuments metric describes the number of documents rejected by the document validation.
+     * @param numInvalidDocuments
+     */
+    @CustomMetric(name = "numInvalidDocuments", kind = Metric.Kind.COUNTER,
+    		description = "The number of documents from the 'documentAttribute' that were not indexed, because they failed the 'documentValidation'.")
+    public void setNumInvalidDocuments(Metric numInvalidDocuments) {
+    	this.numInvalidDocuments = numInvalidDocuments;
+    }
+    
+    /**
+     * valueCacheHits metric describes the number of string values written from the value caches.
+     * @param valueCacheHits
+     */
+    @CustomMetric(name = "valueCacheHits", kind = Metric.Kind.COUNTER,
+    		description = "The number of string attribute values that were written from the value cache, without escaping and encoding.")
+    public void setValueCacheHits(Metric valueCacheHits) {
+    	this.valueCacheHits = valueCacheHits;
+    }
+    
+    /**
+     * valueCacheMisses metric describes the number of string values not found in the value caches.
+     * @param valueCacheMisses
+     */
+    @CustomMetric(name = "valueCacheMisses", kind = Metric.Kind.COUNTER,
+    		description = "The number of string attribute values that were not found in the value cache and had to be encoded.")
+    public void setValueCacheMisses(Metric valueCacheMisses) {
+    	this.valueCacheMisses = valueCacheMisses;
+    }
+    
+    /**
+     * valueCacheHitRate metric describes the percentage of value cache lookups that were hits.
+     * @param valueCacheHitRate
+     */
+    @CustomMetric(name = "valueCacheHitRate", kind = Metric.Kind.GAUGE,
+    		description = "The percentage of the lookups in the value cache that were hits.")
+    public void setValueCacheHitRate(Metric valueCacheHitRate) {
+    	this.valueCacheHitRate = valueCacheHitRate;
+    }
+    
+    /**
+     * valueCacheEntries metric describes the number of values in the value caches.
+     * @param valueCacheEntries
+     */
+    @CustomMetric(name = "valueCacheEntries", kind = Metric.Kind.GAUGE,
+    		description = "The number of encoded string values in the value caches of all attributes.")
+    public void setValueCacheEntries(Metric valueCacheEntries) {
+    	this.valueCacheEntries = valueCacheEntries;
+    }
+    
+    /**
+     * get or create a metric of a node, the metric name is the prefix followed by host:port
+     * @param prefix the metric name prefix
+     * @param node the node URL
+     * @param description the metric description, the node URL is appended
+     * @param kind the metric kind
+     */
+    private synchronized Metric getNodeMetric(String prefix, String node, String description, Metric.Kind kind) {
+    	String name = prefix + node.substring(node.indexOf("://") + 3);
+    	Metric metric = nodeMetrics.get(name);
+    	if (metric == null) {
+    		metric = getOperatorContext().getMetrics().getCustomMetrics().get(name);
+    		if (metric == null) {
+    			metric = getOperatorContext().getMetrics().createCustomMetric(name, description + node + ".", kind);
+    		}
+    		nodeMetrics.put(name, metric);
+    	}
+    	return metric;
+    }
+    
     // operator parameters setters ------------------------------------------------------------------------------------------------------
     
 	@Parameter(name="indexName", optional=true,
@@ -515,12 +1289,24 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 	
 	@Parameter(name="timestampName", optional=true,
 		description="If parameter 'storeTimestamps' is true, this parameter specifies the name of the document attribute that will contain the timestamp. "
-		+ "The timestamp is generated in the format 'yyyy-MM-ddTHH:mm:ss.SSSZZ' in Java SimpleDate notation. "
+		+ "The timestamp is generated in the format 'yyyy-MM-ddTHH:mm:ss.SSSZZ' in Java SimpleDate notation, see the 'timestampFormat' parameter. "
 	)
 	public void setTimestampName(String timestampName) {
 		this.timestampName = timestampName;
 	}
 	
+	@Parameter(name="timestampFormat", optional=true,
+		description="If parameter 'storeTimestamps' is true, this parameter specifies the format of the timestamp. "
+		+ "Supported values are 'date_time' and 'epoch_millis', like the corresponding Elasticsearch date formats. "
+		+ "With 'date_time', the timestamp is a string in the format 'yyyy-MM-ddTHH:mm:ss.SSSZZ' in Java SimpleDate notation, in the time zone of the PE. "
+		+ "With 'epoch_millis', the timestamp is a number containing the milliseconds since the epoch, which is cheaper to write. "
+		+ "The format is also used for input attributes of type timestamp. "
+		+ "The default value is 'date_time'."
+	)
+	public void setTimestampFormat(String timestampFormat) {
+		this.timestampFormatName = timestampFormat;
+	}
+	
 	@Parameter(name="timestampValueAttribute", optional=true,
 		description="If parameter 'storeTimestamps' is true, this parameter specifies an attribute of type int64 in the input tuple containing the timestamp value in Unix format with milliseconds. "
 		+ "If the parameter is not specified, the current time is used as timestamp value. "
@@ -530,20 +1316,234 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 	}
 	
 	@Parameter(name="bulkSize", optional=true,
-		description="Specifies the size of the bulk to submit to Elasticsearch. The default value is 1. When operator is part of consistent region, this parameter is ignored."
+		description="Specifies the size of the bulk to submit to Elasticsearch. The default value is 1. "
+		+ "When operator is part of consistent region, the bulk is only submitted before the drain if this parameter is set explicitly, "
+		+ "otherwise all documents are collected and submitted on drain."
 	)
 	public void setBulkSize(int bulkSize) {
 		this.bulkSize = bulkSize;
 	}
 	
+	@Parameter(name="bulkSizeBytes", optional=true,
+		description="Specifies the maximum size in bytes of the bulk request body to submit to Elasticsearch, including the bulk action metadata. "
+		+ "The bulk is submitted as soon as its size reaches this value or the number of documents reaches 'bulkSize', whatever comes first. "
+		+ "Elasticsearch recommends bulk sizes of 5 to 15 MB. The limit must be lower than the 'http.max_content_length' setting of the Elasticsearch nodes. "
+		+ "The default value is 0, which means the bulk size is only limited by the 'bulkSize' parameter. "
+		+ "When operator is part of consistent region, a bulk reaching this size is submitted before the drain too."
+	)
+	public void setBulkSizeBytes(long bulkSizeBytes) {
+		this.bulkSizeBytes = bulkSizeBytes;
+	}
+	
+	@Parameter(name="flushInterval", optional=true,
+		description="Specifies the maximum time in milliseconds between two bulk submissions. If the bulk is not filled up within this time, "
+		+ "it is submitted anyway by a background thread, so documents arrive in Elasticsearch with a bounded latency on low rate streams. "
+		+ "The interval starts again with each bulk submission. "
+		+ "The default value is 0, which means partially filled bulks are only submitted when the bulk size is reached, or on a final punctuation. "
+		+ "When operator is part of consistent region, this parameter is ignored."
+	)
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+	
+	@Parameter(name="maxDocumentAge", optional=true,
+		description="Specifies the maximum time in milliseconds a document is held in the bulk. The bulk is submitted by a background thread, "
+		+ "when the oldest document in the bulk reaches this age. "
+		+ "The default value is 0, which means the age of documents is not checked. "
+		+ "When operator is part of consistent region, this parameter is ignored."
+	)
+	public void setMaxDocumentAge(long maxDocumentAge) {
+		this.maxDocumentAge = maxDocumentAge;
+	}
+	
+	@Parameter(name="adaptiveBulkSize", optional=true,
+		description="Enables adaptive bulk sizing. The number of documents and the size in bytes after which a bulk is submitted are adjusted "
+		+ "to the observed behavior of the Elasticsearch cluster, using an additive increase / multiplicative decrease scheme. "
+		+ "The targets are halved, if documents of a bulk are rejected by the server because its write queue is full (HTTP status 429), "
+		+ "if the bulk request fails, or if the bulk takes longer than 'targetBulkLatency'. "
+		+ "The targets grow slowly, as long as full bulks are completed within 'targetBulkLatency' and the throughput does not drop. "
+		+ "The 'bulkSize' and 'bulkSizeBytes' parameters specify the upper bounds of the targets, so 'bulkSize' should be set to a value larger than the default. "
+		+ "The current targets are available in the 'targetBulkSize' and 'targetBulkSizeBytes' metrics. "
+		+ "The default value is 'false'. When operator is part of consistent region, this parameter is ignored."
+	)
+	public void setAdaptiveBulkSize(boolean adaptiveBulkSize) {
+		this.adaptiveBulkSize = adaptiveBulkSize;
+	}
+	
+	@Parameter(name="targetBulkLatency", optional=true,
+		description="Specifies the maximum time in milliseconds a bulk request should take, if 'adaptiveBulkSize' is enabled. "
+		+ "Bulks taking longer cause a decrease of the bulk size targets. The default value is 1000."
+	)
+	public void setTargetBulkLatency(long targetBulkLatency) {
+		this.targetBulkLatency = targetBulkLatency;
+	}
+	
+	@Parameter(name="maxInFlightBulks", optional=true,
+		description="Specifies the maximum number of bulks that are sent asynchronously. If the value is greater than 0, filled bulks are sent "
+		+ "by a sender thread, while the operator continues to convert tuples and fill the next bulk. If the maximum number of bulks is in flight, "
+		+ "the processing of tuples is blocked until a bulk is completed. A final punctuation waits until all bulks in flight are completed. "
+		+ "A value of 1 lets the conversion overlap with the sending of one bulk, higher values allow more bulks to be queued. "
+		+ "The default value is 0, which means the bulk is sent by the thread processing the tuples. "
+		+ "When operator is part of consistent region, this parameter is ignored."
+	)
+	public void setMaxInFlightBulks(int maxInFlightBulks) {
+		this.maxInFlightBulks = maxInFlightBulks;
+	}
+	
+	@Parameter(name="maxItemRetries", optional=true,
+		description="Specifies how often documents are sent again, that were rejected by the server with a temporary error. "
+		+ "Documents failing with HTTP status 429 or 503, or with an 'es_rejected_execution_exception', are collected into a follow-up bulk, "
+		+ "that is sent after a delay. Other errors, like mapping errors, are permanent and the documents are not sent again. "
+		+ "Documents that still fail after the last retry are counted in the 'numFailedDocuments' metric. "
+		+ "The default value is 3. A value of 0 disables the retry."
+	)
+	public void setMaxItemRetries(int maxItemRetries) {
+		this.maxItemRetries = maxItemRetries;
+	}
+	
+	@Parameter(name="itemRetryDelay", optional=true,
+		description="Specifies the delay in milliseconds before rejected documents are sent again. The upper bound of the delay is doubled for each further retry, "
+		+ "up to 'reconnectionMaxDelay'. The actual delay is a random value up to this bound, so operators rejected at the same time do not retry in lockstep. "
+		+ "The default value is 100."
+	)
+	public void setItemRetryDelay(long itemRetryDelay) {
+		this.itemRetryDelay = itemRetryDelay;
+	}
+	
+	@Parameter(name="requestCompression", optional=true,
+		description="Enables gzip compression of the bulk request bodies. Compression reduces the network traffic, "
+		+ "JSON documents often compress by a factor of 5 to 10, at the cost of CPU time in the operator and in the Elasticsearch nodes. "
+		+ "Compressed responses are accepted independent of this parameter, if the 'http.compression' setting of the Elasticsearch nodes is enabled. "
+		+ "The default value is 'false'."
+	)
+	public void setRequestCompression(boolean requestCompression) {
+		this.requestCompression = requestCompression;
+	}
+	
+	@Parameter(name="compressionLevel", optional=true,
+		description="Specifies the gzip compression level from 1 (fastest) to 9 (best compression), if 'requestCompression' is enabled. "
+		+ "The default value is 6."
+	)
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+	
+	@Parameter(name="contentFormat", optional=true,
+		description="Specifies the format of the documents and the bulk requests sent to Elasticsearch. Supported values are 'json' and 'smile'. "
+		+ "With 'smile', the tuple attributes are encoded directly into the binary SMILE format. Numbers are sent in their binary representation, "
+		+ "so no conversion to and from text is needed, and the requests are usually smaller. "
+		+ "The CBOR format is not supported, because Elasticsearch does not accept CBOR in bulk requests. "
+		+ "The 'smile' format can be used together with the 'documentAttribute' parameter only if the attribute is a blob containing SMILE documents. "
+		+ "The default value is 'json'."
+	)
+	public void setContentFormat(String contentFormat) {
+		this.contentFormatName = contentFormat;
+	}
+	
+	@Parameter(name="failedDocumentsQueueSize", optional=true,
+		description="Specifies the maximum number of failed documents waiting to be submitted to the optional output port. "
+		+ "The documents are submitted by a separate thread, so a slow downstream operator does not block the sending of bulks. "
+		+ "If the queue is full, further failed documents are dropped and counted in the 'numFailedDocumentsDropped' metric. "
+		+ "The default value is 10000."
+	)
+	public void setFailedDocumentsQueueSize(int failedDocumentsQueueSize) {
+		this.failedDocumentsQueueSize = failedDocumentsQueueSize;
+	}
+	
+	@Parameter(name="acknowledgementMode", optional=true,
+		description="Specifies the tuples submitted to the optional acknowledgement port. "
+		+ "With 'document', a tuple is submitted for each document acknowledged by the server. "
+		+ "With 'bulk', one summary tuple is submitted per bulk, after all retries of the bulk are completed. "
+		+ "The default value is 'document'."
+	)
+	public void setAcknowledgementMode(String acknowledgementMode) {
+		this.acknowledgementMode = acknowledgementMode;
+	}
+	
+	@Parameter(name="acknowledgementQueueSize", optional=true,
+		description="Specifies the maximum number of bulk acknowledgements waiting to be submitted to the optional acknowledgement port. "
+		+ "The tuples are submitted by a separate thread, so a slow downstream operator does not block the sending of bulks. "
+		+ "If the queue is full, the acknowledgements of further bulks are dropped and counted in the 'numAcknowledgementsDropped' metric. "
+		+ "The default value is 1000."
+	)
+	public void setAcknowledgementQueueSize(int acknowledgementQueueSize) {
+		this.acknowledgementQueueSize = acknowledgementQueueSize;
+	}
+	
+	@Parameter(name="spillDirectory", optional=true,
+		description="Enables the spill queue and specifies its directory. If a bulk cannot be sent because no node can be reached, "
+		+ "it is written to the spill queue on disk instead of failing its documents. While the queue is not empty, further bulks are appended to it, "
+		+ "so the tuple processing is not blocked and newer documents do not overtake the spilled ones. "
+		+ "The bulks are sent from the queue by a background thread, oldest first, as soon as a node can be reached again, "
+		+ "and their documents are acknowledged then. Bulks left in the queue at shutdown are sent after the next start of the operator. "
+		+ "The queue is stored in memory mapped segment files in a subdirectory named after the operator. "
+		+ "A relative path is resolved against the data directory of the application. "
+		+ "When operator is part of consistent region, this parameter is ignored."
+	)
+	public void setSpillDirectory(String spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+	
+	@Parameter(name="spillMaxSize", optional=true,
+		description="Specifies the maximum size in bytes of the spill queue files, if 'spillDirectory' is set. "
+		+ "If a bulk does not fit into the queue, its documents fail as without spill queue. "
+		+ "The default value is 1073741824 (1 GiB)."
+	)
+	public void setSpillMaxSize(long spillMaxSize) {
+		this.spillMaxSize = spillMaxSize;
+	}
+	
+	@Parameter(name="drainParallelism", optional=true,
+		description="Specifies the number of sub-bulks the pending documents are split into on drain of a consistent region. "
+		+ "The sub-bulks are sent in parallel over different connections, so the drain takes less time with large bulks. "
+		+ "The value is limited by the 'maxConnections' parameter and by the number of pending documents. "
+		+ "The default value is 1, which means the pending documents are sent in one bulk."
+	)
+	public void setDrainParallelism(int drainParallelism) {
+		this.drainParallelism = drainParallelism;
+	}
+	
 	@Parameter(name="documentAttribute", optional=true,
 		description="Specifies the name of an attribute in the input tuple, containing the document in JSON format to be inserted to. "
+			+ "The attribute type can be rstring, ustring or blob. The bytes of rstring and blob values are copied into the bulk request as they are, "
+			+ "so the document must be encoded in UTF-8 and must not contain line breaks. A blob can also contain a SMILE document, if the 'contentFormat' is 'smile'. "
 			+ "The parameter 'storeTimestamps' must not be set in conjunction with the 'documentAttribute' parameter."
 	)
-	public void setDocumentAttribute(TupleAttribute<Tuple, String> documentAttribute) {
+	public void setDocumentAttribute(TupleAttribute<Tuple, ?> documentAttribute) {
 		this.documentAttribute = documentAttribute;
 	}
 	
+	@Parameter(name="documentValidation", optional=true,
+		description="If set to true, the JSON documents from the 'documentAttribute' are checked before they are added to the bulk. "
+			+ "The check is a single scan of the bytes: the document must be one JSON object with balanced brackets and terminated strings, "
+			+ "without line breaks and control characters. Values are not parsed. "
+			+ "Invalid documents are not indexed, they are counted in the 'numInvalidDocuments' metric and submitted to the optional output port. "
+			+ "The default value is false."
+	)
+	public void setDocumentValidation(boolean documentValidation) {
+		this.documentValidation = documentValidation;
+	}
+	
+	@Parameter(name="valueCacheAttributes", optional=true, cardinality=-1,
+		description="Specifies string attributes of the input tuple whose values are cached in encoded form. "
+			+ "Each value is escaped and encoded once, later tuples with the same value get a copy of the cached bytes. "
+			+ "This reduces the serialization cost for attributes with few distinct values, like host names or status codes. "
+			+ "If this parameter is not set and 'valueCacheSize' is greater than 0, all string attributes are cached, and the cache of an attribute "
+			+ "is switched off when it is full and less than half of the values were found in it."
+	)
+	public void setValueCacheAttributes(List<TupleAttribute<Tuple, String>> valueCacheAttributes) {
+		this.valueCacheAttributes = valueCacheAttributes;
+	}
+	
+	@Parameter(name="valueCacheSize", optional=true,
+		description="Specifies the maximum number of distinct values cached per attribute, see the 'valueCacheAttributes' parameter. "
+			+ "When the cache of an attribute is full, further values are encoded for each tuple. "
+			+ "The default value is 1000 if 'valueCacheAttributes' is set, otherwise 0, which disables the value caches."
+	)
+	public void setValueCacheSize(int valueCacheSize) {
+		this.valueCacheSize = valueCacheSize;
+	}
+	
 	// operator and port documentation -------------------------------------------------------------------------------------------------------
 
 	static final String operatorDescription = 
@@ -571,10 +1571,45 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 			+ "Some attributes may get special treatment to serve as document id, index name or timestamp provider. "
 			+ "See parameteters 'indexNameAttribute', 'idNameAttribute', 'typeNameAttribute', 'timeStampValueAttribute' for details. "
 			+ "These attributes will not become document attributes in the indexed Elasticsearch document. "
-			+ "The following SPL attribute types are suppoted by the operator: boolean,rstring,ustring,bstring, all float types, all int and uint types. "
+			+ "The following SPL attribute types are suppoted by the operator: boolean,rstring,ustring,bstring, all float types, all int and uint types, "
+			+ "all decimal types, timestamp, and the composite types tuple, list, set and map with elements of supported types. "
+			+ "Nested tuples and maps become JSON objects, lists and sets become JSON arrays. "
+			+ "Map keys become field names, so the key type must be boolean, a string, int or uint type. "
+			+ "Timestamp attributes are written in the format of the 'timestampFormat' parameter, with millisecond precision. "
+			+ "Decimal attributes are written with all digits in JSON documents, and as float64 in SMILE documents. "
 			+ "If the input port schema uses other types, the operator will not start and emit an error message for the attribute with the unsupported type. "
 			;
  
+	static final String oport0Description =
+			"Optional port that emits the documents that could not be indexed. "
+			+ "A tuple is submitted for each document that failed permanently, because of an error like a mapping error, "
+			+ "because all retries were rejected, or because the bulk request failed. "
+			+ "The attributes of the output schema are populated by name, all attributes are optional: "
+			+ "'document' (rstring, ustring or blob) contains the document as sent to Elasticsearch, "
+			+ "'index' (rstring) the index name, 'id' (rstring) the document id or an empty string if the id is generated by the server, "
+			+ "'status' (int32) the HTTP status of the item or of the bulk request, 0 if no response was received, "
+			+ "and 'reason' (rstring) the error reason. "
+			+ "If the 'contentFormat' parameter is 'smile', the 'document' attribute must be of type blob. "
+			+ "The tuples are submitted asynchronously, see the 'failedDocumentsQueueSize' parameter. "
+			+ "In a consistent region, the pending tuples are submitted on drain, and discarded on reset. "
+			;
+ 
+	static final String oport1Description =
+			"Optional port that emits the acknowledgements of the server for the indexed documents, for example to control the rate of an upstream operator. "
+			+ "The port can only be used together with the error port 0. The tuples depend on the 'acknowledgementMode' parameter. "
+			+ "The attributes of the output schema are populated by name, all attributes are optional. "
+			+ "In 'document' mode a tuple is submitted for each indexed document, with the attributes "
+			+ "'id' (rstring) the document id, as assigned by the server if it was not specified, 'index' (rstring) the index name, "
+			+ "'version' (int64) the document version, 'result' (rstring) 'created' or 'updated', 'status' (int32) the HTTP status of the item, "
+			+ "'bulkId' (int64) the number of the bulk containing the document, and 'latency' (int64) the time in milliseconds from the arrival of the tuple until the acknowledgement. "
+			+ "In 'bulk' mode a tuple is submitted for each bulk, with the attributes 'bulkId' (int64), 'documents' (int32) the number of documents in the bulk, "
+			+ "'indexedDocuments' (int32) and 'failedDocuments' (int32) the number of acknowledged and failed documents, "
+			+ "and 'latency' (int64) the time in milliseconds from the arrival of the first tuple of the bulk until the bulk is completed. "
+			+ "Bulks are numbered from 1, in the order they are filled. Documents that are retried are acknowledged with their original bulk. "
+			+ "The tuples are submitted asynchronously, see the 'acknowledgementQueueSize' parameter. "
+			+ "In a consistent region, the pending tuples are submitted on drain, and discarded on reset. "
+			;
+ 
 	public static final String CR_DESC =
 			"\\n"+
 			"\\n+ Behavior in a consistent region\\n"+
@@ -584,8 +1619,18 @@ public class ElasticsearchIndex extends AbstractElasticsearchOperator implements
 			"\\nConsistent region supports that tuples are processed at least once.\\n" +
 			"\\nFailures during tuple processing or drain are handled by the operator and consistent region support.\\n" +
 			"\\nOn drain, the operator flushes its internal buffer and loads the documents to the Elasticsearch database.\\n" +
+			"\\nIf the `bulkSize` or `bulkSizeBytes` parameter is set, bulks reaching this size are submitted between the drains too, "+
+			"so a drain only submits the remaining documents. These bulks are submitted synchronously, so all documents received before a drain are indexed when the drain completes. "+
+			"Documents submitted after the last checkpoint are submitted again, when the region is reset and the tuples are replayed. "+
+			"Use the `idName` or `idNameAttribute` parameter to overwrite these documents instead of creating duplicates.\\n" +
+			"\\nWith the `drainParallelism` parameter, the documents pending on drain are split into sub-bulks, that are sent in parallel over different connections. "+
+			"If, since the last drain, a bulk could not be sent to any node, the server responded with an error to the whole bulk, "+
+			"or documents were still rejected after the last retry, the drain fails and the region is reset, so the tuples are replayed. "+
+			"This applies to the bulks submitted on drain as well as to the bulks submitted between the drains. "+
+			"Documents that the server refuses permanently, for example because of a mapping error, do not fail the drain.\\n" +
 			"\\n# Restrictions\\n"+
-			"\\nThe bulk size can not be configured when running in a consistent region. The parameter `bulkSize` is ignored and the bulk is submitted on drain."
+			"\\nThe parameters `flushInterval`, `maxDocumentAge`, `adaptiveBulkSize`, `maxInFlightBulks` and `spillDirectory` are ignored in a consistent region. "+
+			"Without `bulkSize` and `bulkSizeBytes` parameter, the bulk is submitted on drain only."
 		   	;
 
 	public static final String CR_EXAMPLES_DESC =
@@ -0,0 +1,89 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch;
+
+import java.nio.charset.StandardCharsets;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingOutput;
+import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.state.ConsistentRegionContext;
+import com.ibm.streams.operator.types.ValueFactory;
+import com.ibm.streamsx.elasticsearch.client.FailedDocument;
+import com.ibm.streamsx.elasticsearch.client.FailedDocumentListener;
+
+/**
+ * Submits failed documents to the error output port.
+ * The attributes of the output tuple are populated by name, attributes with other names keep their default values.
+ */
+class FailedDocumentEmitter extends PortEmitter<FailedDocument> implements FailedDocumentListener
+{
+	// names of the output attributes populated by the emitter
+	static final String DOCUMENT_ATTRIBUTE = "document";
+	static final String INDEX_ATTRIBUTE = "index";
+	static final String ID_ATTRIBUTE = "id";
+	static final String STATUS_ATTRIBUTE = "status";
+	static final String REASON_ATTRIBUTE = "reason";
+
+	// attributes present in the output schema
+	private final boolean hasDocument;
+	private final boolean hasBlobDocument;
+	private final boolean hasIndex;
+	private final boolean hasId;
+	private final boolean hasStatus;
+	private final boolean hasReason;
+
+	FailedDocumentEmitter(StreamingOutput<OutputTuple> port, int capacity, ConsistentRegionContext crContext) {
+		super(port, capacity, crContext);
+		StreamSchema schema = getStreamSchema();
+		hasDocument = hasAttribute(schema, DOCUMENT_ATTRIBUTE);
+		hasBlobDocument = hasAttribute(schema, DOCUMENT_ATTRIBUTE, MetaType.BLOB);
+		hasIndex = hasAttribute(schema, INDEX_ATTRIBUTE);
+		hasId = hasAttribute(schema, ID_ATTRIBUTE);
+		hasStatus = hasAttribute(schema, STATUS_ATTRIBUTE);
+		hasReason = hasAttribute(schema, REASON_ATTRIBUTE);
+	}
+
+	/**
+	 * @return true if the document attribute holds the document as text, binary content formats need a blob attribute
+	 */
+	boolean hasTextDocument() {
+		return hasDocument && !hasBlobDocument;
+	}
+
+	@Override
+	public void documentFailed(FailedDocument document) {
+		offer(document);
+	}
+
+	@Override
+	protected void submit(StreamingOutput<OutputTuple> port, FailedDocument document) throws Exception {
+		OutputTuple tuple = port.newTuple();
+		if (hasDocument) {
+			if (hasBlobDocument) {
+				tuple.setBlob(DOCUMENT_ATTRIBUTE, ValueFactory.newBlob(document.getDocument()));
+			} else {
+				tuple.setString(DOCUMENT_ATTRIBUTE, new String(document.getDocument(), StandardCharsets.UTF_8));
+			}
+		}
+		if (hasIndex) {
+			tuple.setString(INDEX_ATTRIBUTE, document.getIndex());
+		}
+		if (hasId && document.getId() != null) {
+			tuple.setString(ID_ATTRIBUTE, document.getId());
+		}
+		if (hasStatus) {
+			tuple.setInt(STATUS_ATTRIBUTE, document.getStatus());
+		}
+		if (hasReason && document.getReason() != null) {
+			tuple.setString(REASON_ATTRIBUTE, document.getReason());
+		}
+		port.submit(tuple);
+	}
+}
@@ -0,0 +1,166 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingOutput;
+import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.state.ConsistentRegionContext;
+
+/**
+ * Submits tuples to an output port from an own thread. The client threads only put the items into a bounded queue,
+ * the tuples are created and submitted by the emitter thread, so a slow downstream operator does not block the sending of bulks.
+ * If the queue is full, the item is dropped and counted.
+ *
+ * @param <T> the type of the queued items
+ */
+abstract class PortEmitter<T>
+{
+	// in a consistent region the emitter waits for a permit, the poll timeout bounds the time a drain is delayed
+	private static final long POLL_TIMEOUT = 100;
+
+	private static Logger logger = Logger.getLogger(PortEmitter.class.getName());
+
+	private final StreamingOutput<OutputTuple> port;
+	private final ConsistentRegionContext crContext;
+	private final BlockingQueue<T> queue;
+	private final AtomicLong dropped = new AtomicLong(0);
+
+	// the emitter thread and flush() may submit concurrently
+	private final Object submitLock = new Object();
+	private Thread emitter = null;
+	private volatile boolean running = false;
+
+	PortEmitter(StreamingOutput<OutputTuple> port, int capacity, ConsistentRegionContext crContext) {
+		this.port = port;
+		this.crContext = crContext;
+		this.queue = new ArrayBlockingQueue<T>(capacity);
+	}
+
+	/**
+	 * create and submit the tuples for one item
+	 * @param port the output port
+	 * @param item the queued item
+	 */
+	protected abstract void submit(StreamingOutput<OutputTuple> port, T item) throws Exception;
+
+	// true if the schema contains the attribute
+	protected static boolean hasAttribute(StreamSchema schema, String name) {
+		return schema.getAttribute(name) != null;
+	}
+
+	// true if the schema contains the attribute with the given type
+	protected static boolean hasAttribute(StreamSchema schema, String name, MetaType type) {
+		return schema.getAttribute(name) != null && schema.getAttribute(name).getType().getMetaType() == type;
+	}
+
+	protected StreamSchema getStreamSchema() {
+		return port.getStreamSchema();
+	}
+
+	/**
+	 * @return the number of items dropped because the queue was full
+	 */
+	long getDroppedItems() {
+		return dropped.get();
+	}
+
+	/**
+	 * queue an item, never blocks
+	 */
+	protected void offer(T item) {
+		if (!queue.offer(item)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	void start(ThreadFactory threadFactory) {
+		running = true;
+		emitter = threadFactory.newThread(new Runnable() {
+			@Override
+			public void run() {
+				emitLoop();
+			}
+		});
+		emitter.start();
+	}
+
+	void shutdown() {
+		running = false;
+		if (emitter != null) {
+			emitter.interrupt();
+		}
+	}
+
+	/**
+	 * submit all queued items from the calling thread, used on drain and before the final punctuation
+	 */
+	void flush() throws Exception {
+		List<T> batch = new ArrayList<T>();
+		synchronized (submitLock) {
+			queue.drainTo(batch);
+			submitAll(batch);
+		}
+	}
+
+	/**
+	 * discard all queued items, used on reset of the consistent region
+	 */
+	void clear() {
+		queue.clear();
+	}
+
+	private void emitLoop() {
+		List<T> batch = new ArrayList<T>();
+		while (running) {
+			boolean permit = false;
+			try {
+				// in a consistent region the items are only taken while holding a permit, so no item is held during a drain
+				if (crContext != null) {
+					crContext.acquirePermit();
+					permit = true;
+				}
+				T first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					synchronized (submitLock) {
+						batch.add(first);
+						queue.drainTo(batch);
+						submitAll(batch);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (Exception e) {
+				logger.error("Submitting tuples to output port " + port.getPortNumber() + " failed, message: " + e.getMessage());
+			} finally {
+				batch.clear();
+				if (permit) {
+					crContext.releasePermit();
+				}
+			}
+		}
+	}
+
+	private void submitAll(List<T> batch) throws Exception {
+		for (T item : batch) {
+			submit(port, item);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Receives the acknowledgements of the server for the indexed documents
+ */
+public interface AcknowledgementListener
+{
+	/**
+	 * called once for each bulk, after all retries of the bulk are completed.
+	 * This may be called by a sender thread and must not block.
+	 * @param acknowledgement the result of the bulk, with the results of the indexed documents if requested
+	 */
+	void bulkAcknowledged(BulkAcknowledgement acknowledgement);
+}
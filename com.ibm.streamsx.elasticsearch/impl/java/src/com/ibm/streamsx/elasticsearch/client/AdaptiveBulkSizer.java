@@ -0,0 +1,92 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Adjusts the bulk size target with an additive increase / multiplicative decrease (AIMD) controller.
+ * 
+ * The target is halved if a bulk had items rejected by the server, if the request failed,
+ * or if the bulk took longer than the target latency. The target grows by a fixed step if a bulk
+ * reached the target size within the target latency, and the throughput did not drop compared to the
+ * average of the previous bulks. Bulks that were sent before they reached the target, for example
+ * on a final punctuation or by the background flusher, do not let the target grow.
+ * 
+ * The targets are bounded by the configured maximum values, and by a hundredth of them.
+ */
+public class AdaptiveBulkSizer implements BulkListener
+{
+	private static final int RANGE = 100;
+	private static final int STEPS = 20;
+	// weight of the last bulk in the throughput average
+	private static final double ALPHA = 0.3;
+
+	private final int maxDocuments;
+	private final long maxBytes;
+	private final int minDocuments;
+	private final long minBytes;
+	private final int documentStep;
+	private final long byteStep;
+	private final long targetLatencyNanos;
+
+	// read by the tuple thread, updated by the thread that evaluates bulk responses
+	private volatile int targetDocuments;
+	private volatile long targetBytes;
+	private double averageThroughput = 0;
+
+	/**
+	 * @param maxDocuments the upper bound for the number of documents in a bulk
+	 * @param maxBytes the upper bound for the bulk size in bytes, 0 if the bulks are not limited by bytes
+	 * @param targetLatencyMillis bulks taking longer than this cause a decrease of the target
+	 */
+	public AdaptiveBulkSizer(int maxDocuments, long maxBytes, long targetLatencyMillis) {
+		this.maxDocuments = Math.max(1, maxDocuments);
+		this.maxBytes = Math.max(0, maxBytes);
+		this.minDocuments = Math.max(1, this.maxDocuments / RANGE);
+		this.minBytes = Math.max(1, this.maxBytes / RANGE);
+		this.documentStep = Math.max(1, this.maxDocuments / STEPS);
+		this.byteStep = Math.max(1, this.maxBytes / STEPS);
+		this.targetLatencyNanos = targetLatencyMillis * 1000000L;
+		// start in the middle of the range
+		this.targetDocuments = Math.max(minDocuments, this.maxDocuments / 2);
+		this.targetBytes = (this.maxBytes > 0) ? Math.max(minBytes, this.maxBytes / 2) : 0;
+	}
+
+	public int getTargetDocuments() {
+		return targetDocuments;
+	}
+
+	/**
+	 * @return the target size in bytes, 0 if bulks are not limited by bytes
+	 */
+	public long getTargetBytes() {
+		return targetBytes;
+	}
+
+	@Override
+	public synchronized void bulkCompleted(BulkStatistics statistics) {
+		if (statistics.getDocuments() == 0) {
+			return;
+		}
+		if (statistics.isRequestFailed() || statistics.getRejectedItems() > 0 || statistics.getLatencyNanos() > targetLatencyNanos) {
+			targetDocuments = Math.max(minDocuments, targetDocuments / 2);
+			if (maxBytes > 0) {
+				targetBytes = Math.max(minBytes, targetBytes / 2);
+			}
+			return;
+		}
+
+		double throughput = statistics.getDocuments() / Math.max(1e-9, statistics.getLatencyNanos() / 1e9);
+		boolean full = statistics.getDocuments() >= targetDocuments || (maxBytes > 0 && statistics.getSizeInBytes() >= targetBytes);
+		if (full && throughput >= 0.9 * averageThroughput) {
+			targetDocuments = (int) Math.min(maxDocuments, (long) targetDocuments + documentStep);
+			if (maxBytes > 0) {
+				targetBytes = Math.min(maxBytes, targetBytes + byteStep);
+			}
+		}
+		averageThroughput = (averageThroughput == 0) ? throughput : ALPHA * throughput + (1 - ALPHA) * averageThroughput;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveBulkSizer [targetDocuments=" + targetDocuments + ", targetBytes=" + targetBytes + ", maxDocuments=" + maxDocuments
+				+ ", maxBytes=" + maxBytes + ", targetLatencyNanos=" + targetLatencyNanos + "]";
+	}
+}
@@ -0,0 +1,143 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Sends requests with the Apache asynchronous HTTP client. A few I/O threads multiplex all connections,
+ * no thread waits for a response. The callbacks are called by the I/O threads, so they must not block.
+ */
+class AsyncHttpTransport implements HttpTransport
+{
+	private final CloseableHttpAsyncClient httpClient;
+
+	/**
+	 * create and start the client
+	 * @param cfg the client configuration, for the timeouts and connection limits
+	 * @param maxConnectionsPerRoute the connection limit per node
+	 * @param sslContext the SSL context, or null if SSL is not enabled
+	 * @param hostnameVerifier the host name verifier, or null for the default verifier
+	 * @param threadFactory creates the I/O threads
+	 */
+	AsyncHttpTransport(Configuration cfg, int maxConnectionsPerRoute, SSLContext sslContext, HostnameVerifier hostnameVerifier, ThreadFactory threadFactory) {
+		// one I/O thread can serve many connections, more threads than connections are never used
+		int ioThreads = Math.max(1, Math.min(cfg.getMaxConnections(), Runtime.getRuntime().availableProcessors()));
+		HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+				.setThreadFactory(threadFactory)
+				.setDefaultIOReactorConfig(IOReactorConfig.custom()
+						.setIoThreadCount(ioThreads)
+						.setConnectTimeout(cfg.getConnectionTimeout())
+						.setSoTimeout(cfg.getReadTimeout())
+						.build())
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectTimeout(cfg.getConnectionTimeout())
+						.setSocketTimeout(cfg.getReadTimeout())
+						.build())
+				.setMaxConnTotal(cfg.getMaxConnections())
+				.setMaxConnPerRoute(maxConnectionsPerRoute)
+				.setKeepAliveStrategy(createKeepAliveStrategy(cfg.getMaxConnectionIdleTime()));
+		if (sslContext != null) {
+			builder.setSSLContext(sslContext);
+			if (hostnameVerifier != null) {
+				builder.setSSLHostnameVerifier(hostnameVerifier);
+			}
+		}
+		httpClient = builder.build();
+		httpClient.start();
+	}
+
+	// idle connections are not reused after the maximum idle time, like the idle connections closed by the Jest client
+	private static ConnectionKeepAliveStrategy createKeepAliveStrategy(final long maxIdleTime) {
+		return new ConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+				if (maxIdleTime <= 0) {
+					return duration;
+				}
+				return (duration > 0) ? Math.min(duration, maxIdleTime) : maxIdleTime;
+			}
+		};
+	}
+
+	private static HttpResult toResult(HttpResponse response) throws IOException {
+		// the response consumer of the client buffers the entity, so it can be read without blocking
+		String body = (response.getEntity() != null) ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : null;
+		return new HttpResult(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(), body);
+	}
+
+	private static IOException toIOException(Throwable e) {
+		return (e instanceof IOException) ? (IOException) e : new IOException(e.getMessage(), e);
+	}
+
+	@Override
+	public HttpResult execute(HttpUriRequest request) throws IOException {
+		Future<HttpResponse> future = httpClient.execute(request, null);
+		try {
+			return toResult(future.get());
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Request interrupted");
+		} catch (ExecutionException e) {
+			throw toIOException(e.getCause());
+		}
+	}
+
+	@Override
+	public void execute(HttpUriRequest request, final Callback callback) {
+		try {
+			httpClient.execute(request, new FutureCallback<HttpResponse>() {
+				@Override
+				public void completed(HttpResponse response) {
+					HttpResult result;
+					try {
+						result = toResult(response);
+					} catch (IOException e) {
+						callback.failed(e);
+						return;
+					}
+					callback.completed(result);
+				}
+
+				@Override
+				public void failed(Exception e) {
+					callback.failed(toIOException(e));
+				}
+
+				@Override
+				public void cancelled() {
+					callback.failed(new IOException("Request cancelled"));
+				}
+			});
+		} catch (RuntimeException e) {
+			// the client rejects requests after it has been closed
+			callback.failed(toIOException(e));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close();
+	}
+}
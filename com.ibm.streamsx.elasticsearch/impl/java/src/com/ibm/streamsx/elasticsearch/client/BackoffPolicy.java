@@ -0,0 +1,63 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter for reconnection attempts and for retries of rejected items.
+ * 
+ * The upper bound of the delay starts at the initial delay and is multiplied for each further attempt,
+ * until it reaches the maximum delay. The actual delay is a random value between 0 and the upper bound,
+ * so clients that lost the connection or got rejections at the same time do not retry in lockstep.
+ */
+public class BackoffPolicy
+{
+	private final long initialDelay;
+	private final double multiplier;
+	private final long maxDelay;
+	private final long deadline;
+
+	/**
+	 * @param initialDelay upper bound of the first delay in milliseconds
+	 * @param multiplier factor applied to the upper bound for each further attempt
+	 * @param maxDelay the maximum upper bound in milliseconds
+	 * @param deadline the overall time in milliseconds after which no further attempt is made, 0 for no deadline
+	 */
+	public BackoffPolicy(long initialDelay, double multiplier, long maxDelay, long deadline) {
+		this.initialDelay = initialDelay;
+		this.multiplier = multiplier;
+		this.maxDelay = maxDelay;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @param attempt the number of the retry, starting with 0
+	 * @return the upper bound of the delay before this retry
+	 */
+	public long getDelayLimit(int attempt) {
+		double limit = initialDelay * Math.pow(multiplier, attempt);
+		return (long) Math.min(maxDelay, limit);
+	}
+
+	/**
+	 * @param attempt the number of the retry, starting with 0
+	 * @return a random delay between 0 and the upper bound for this retry
+	 */
+	public long getDelay(int attempt) {
+		long limit = getDelayLimit(attempt);
+		return (limit > 0) ? ThreadLocalRandom.current().nextLong(limit + 1) : 0;
+	}
+
+	/**
+	 * @param elapsed the time in milliseconds since the first attempt
+	 * @param delay the delay before the next attempt
+	 * @return true if the next attempt would start after the deadline
+	 */
+	public boolean isDeadlineExceeded(long elapsed, long delay) {
+		return deadline > 0 && elapsed + delay > deadline;
+	}
+
+	@Override
+	public String toString() {
+		return "BackoffPolicy [initialDelay=" + initialDelay + ", multiplier=" + multiplier + ", maxDelay=" + maxDelay + ", deadline=" + deadline + "]";
+	}
+}
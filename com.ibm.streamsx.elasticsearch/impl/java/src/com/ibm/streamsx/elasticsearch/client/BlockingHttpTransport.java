@@ -0,0 +1,52 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Sends requests with the blocking Apache HTTP client of Jest, the calling thread waits for the response
+ */
+class BlockingHttpTransport implements HttpTransport
+{
+	private final CloseableHttpClient httpClient;
+
+	/**
+	 * @param httpClient the HTTP client, it is owned and closed by the Jest client
+	 */
+	BlockingHttpTransport(CloseableHttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
+	@Override
+	public HttpResult execute(HttpUriRequest request) throws IOException {
+		CloseableHttpResponse response = httpClient.execute(request);
+		try {
+			String body = (response.getEntity() != null) ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : null;
+			return new HttpResult(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(), body);
+		} finally {
+			response.close();
+		}
+	}
+
+	@Override
+	public void execute(HttpUriRequest request, Callback callback) {
+		HttpResult result;
+		try {
+			result = execute(request);
+		} catch (IOException e) {
+			callback.failed(e);
+			return;
+		}
+		callback.completed(result);
+	}
+
+	@Override
+	public void close() {
+		// the HTTP client is closed with the Jest client
+	}
+}
@@ -0,0 +1,128 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Data structure describing the acknowledgement of a bulk by the server. 
+ * If document details are requested, the results of the indexed documents are kept in parallel arrays, 
+ * to avoid an object per document.
+ */
+public class BulkAcknowledgement
+{
+	private final long bulkId;
+	private final int documents;
+	private final boolean withDocuments;
+	private int indexedDocuments = 0;
+	private int failedDocuments = 0;
+	private long latencyNanos = 0;
+
+	// results of the indexed documents, only if document details are requested
+	private String[] indices;
+	private String[] ids;
+	private long[] versions;
+	private int[] statuses;
+	private long[] documentLatencyNanos;
+
+	public BulkAcknowledgement(long bulkId, int documents, boolean withDocuments) {
+		this.bulkId = bulkId;
+		this.documents = documents;
+		this.withDocuments = withDocuments;
+		if (withDocuments) {
+			indices = new String[documents];
+			ids = new String[documents];
+			versions = new long[documents];
+			statuses = new int[documents];
+			documentLatencyNanos = new long[documents];
+		}
+	}
+
+	/**
+	 * record a document acknowledged by the server
+	 * @param index the index name
+	 * @param id the document id, as assigned by the server
+	 * @param version the document version, or 0 if unknown
+	 * @param status the HTTP status of the item
+	 * @param latencyNanos the time from adding the document to the bulk until the acknowledgement
+	 */
+	void addIndexedDocument(String index, String id, long version, int status, long latencyNanos) {
+		// each document of the bulk is acknowledged at most once, also if it was retried
+		if (withDocuments) {
+			indices[indexedDocuments] = index;
+			ids[indexedDocuments] = id;
+			versions[indexedDocuments] = version;
+			statuses[indexedDocuments] = status;
+			documentLatencyNanos[indexedDocuments] = latencyNanos;
+		}
+		indexedDocuments++;
+	}
+
+	// record documents acknowledged by the server, if document details are not requested
+	void addIndexedDocuments(int count) {
+		indexedDocuments += count;
+	}
+
+	void addFailedDocuments(int count) {
+		failedDocuments += count;
+	}
+
+	void setLatencyNanos(long latencyNanos) {
+		this.latencyNanos = latencyNanos;
+	}
+
+	// sequence number of the bulk, starting with 1 for each client
+	public long getBulkId() {
+		return bulkId;
+	}
+
+	// number of documents in the bulk
+	public int getDocuments() {
+		return documents;
+	}
+
+	// number of documents acknowledged by the server
+	public int getIndexedDocuments() {
+		return indexedDocuments;
+	}
+
+	// number of documents that failed permanently
+	public int getFailedDocuments() {
+		return failedDocuments;
+	}
+
+	// time from adding the first document to the bulk until the bulk is completed, including retries
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	// true if the results of the single documents are available
+	public boolean hasDocuments() {
+		return withDocuments;
+	}
+
+	// the results of the indexed documents, the position is from 0 to getIndexedDocuments() - 1
+
+	public String getIndex(int document) {
+		return indices[document];
+	}
+
+	public String getId(int document) {
+		return ids[document];
+	}
+
+	public long getVersion(int document) {
+		return versions[document];
+	}
+
+	// 201 if the document was created, 200 if an existing document was updated
+	public int getStatus(int document) {
+		return statuses[document];
+	}
+
+	public long getLatencyNanos(int document) {
+		return documentLatencyNanos[document];
+	}
+
+	@Override
+	public String toString() {
+		return "BulkAcknowledgement [bulkId=" + bulkId + ", documents=" + documents + ", indexedDocuments=" + indexedDocuments
+				+ ", failedDocuments=" + failedDocuments + ", latencyNanos=" + latencyNanos + "]";
+	}
+}
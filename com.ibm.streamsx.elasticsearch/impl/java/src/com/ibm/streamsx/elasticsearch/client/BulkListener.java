@@ -0,0 +1,14 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Receives the outcome of bulk requests sent by a client implementation
+ */
+public interface BulkListener
+{
+	/**
+	 * called after a bulk request has been sent and the response was evaluated,
+	 * also if the request failed
+	 * @param statistics data about the bulk and its response
+	 */
+	void bulkCompleted(BulkStatistics statistics);
+}
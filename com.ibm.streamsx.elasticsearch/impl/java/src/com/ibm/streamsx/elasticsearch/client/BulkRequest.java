@@ -0,0 +1,377 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.ibm.streamsx.elasticsearch.serializer.ContentFormat;
+import com.ibm.streamsx.elasticsearch.serializer.DocumentWriter;
+
+/**
+ * The body of a bulk index request, in NDJSON format or as a sequence of SMILE documents. For each document 
+ * the action metadata and the document bytes are appended to one reusable buffer, which is sent as-is.
+ * Both are terminated by the separator of the content format.
+ * The encoded start of the action line is cached per (index, type) pair, so only the
+ * optional document id has to be encoded per document.
+ * The start of each item is recorded, so single items can be copied into another bulk, for example to retry them.
+ * Index, type, id and the time the item was added are kept too, so a failed or acknowledged document can be reported with its metadata.
+ * A bulk can be written to a stream and read again, to keep it on disk while the cluster cannot be reached.
+ */
+class BulkRequest
+{
+	private final ContentFormat format;
+	private final byte[] separator;
+	// encoded parts of the action metadata
+	private final byte[] idField;
+	private final byte[] actionEnd;
+
+	private final DocumentWriter body;
+	private int numberOfDocuments = 0;
+	// start of the action line and of the document of each item in the body
+	private int[] itemOffsets = new int[64];
+	private int[] documentOffsets = new int[64];
+	private String[] indices = new String[64];
+	private String[] types = new String[64];
+	private String[] ids = new String[64];
+	private long[] enqueueTimes = new long[64];
+	
+	// gzip compressed body, created on demand and kept until the bulk changes
+	private CompressedBody compressedBody = null;
+	private boolean compressedValid = false;
+	// raw deflate without zlib wrapper, the gzip header and trailer are written separately
+	private Deflater deflater = null;
+	private final CRC32 crc = new CRC32();
+	// gzip header: magic, deflate method, no flags, no modification time, no extra flags, unknown OS
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	// index name -> type name -> encoded start of the action line
+	private final Map<String, Map<String, byte[]>> actionCache = new HashMap<String, Map<String, byte[]>>();
+
+	public BulkRequest(ContentFormat format) {
+		this(format, 64 * 1024);
+	}
+
+	public BulkRequest(ContentFormat format, int initialCapacity) {
+		this.format = format;
+		this.body = format.createWriter(initialCapacity);
+		this.separator = new byte[] { format.getSeparator() };
+		
+		DocumentWriter w = format.createWriter(64);
+		w.writeSeparator();
+		w.writeFieldName(w.encodeName("_id"));
+		idField = Arrays.copyOf(w.getBuffer(), w.size());
+		w.reset();
+		w.writeEndObject();
+		w.writeEndObject();
+		w.writeRaw(separator);
+		actionEnd = Arrays.copyOf(w.getBuffer(), w.size());
+	}
+
+	public ContentFormat getContentFormat() {
+		return format;
+	}
+
+	/**
+	 * append a document to the bulk
+	 * @param document the buffer containing the document, encoded in the content format of the bulk
+	 * @param offset the start of the document in the buffer
+	 * @param length the length of the document
+	 * @param index the index name
+	 * @param type the mapping type
+	 * @param id the document id, or null to let the server generate one
+	 */
+	public void add(byte[] document, int offset, int length, String index, String type, String id) {
+		writeAction(index, type, id);
+		body.writeRaw(document, offset, length);
+		body.writeRaw(separator);
+		numberOfDocuments++;
+	}
+
+	/**
+	 * append a document to the bulk, the bytes are copied from the buffer without an intermediate array
+	 * @param document the document between position and limit of the buffer, encoded in the content format of the bulk.
+	 * The position of the buffer is not changed.
+	 * @param index the index name
+	 * @param type the mapping type
+	 * @param id the document id, or null to let the server generate one
+	 */
+	public void add(ByteBuffer document, String index, String type, String id) {
+		writeAction(index, type, id);
+		body.writeRaw(document);
+		body.writeRaw(separator);
+		numberOfDocuments++;
+	}
+
+	// start a new item with its action line, the document follows
+	private void writeAction(String index, String type, String id) {
+		startItem(index, type, id, System.nanoTime());
+		body.writeRaw(getActionStart(index, type));
+		if (id != null) {
+			body.writeRaw(idField);
+			body.writeString(id);
+		}
+		body.writeRaw(actionEnd);
+		documentOffsets[numberOfDocuments] = body.size();
+	}
+
+	/**
+	 * append an item of another bulk, the action line and the document are copied as they are 
+	 * @param source the bulk containing the item
+	 * @param item the position of the item in the source bulk
+	 */
+	public void addItem(BulkRequest source, int item) {
+		int start = source.itemOffsets[item];
+		startItem(source.indices[item], source.types[item], source.ids[item], source.enqueueTimes[item]);
+		documentOffsets[numberOfDocuments] = body.size() + (source.documentOffsets[item] - start);
+		body.writeRaw(source.body.getBuffer(), start, source.getItemEnd(item) - start);
+		numberOfDocuments++;
+	}
+
+	private void startItem(String index, String type, String id, long enqueueTime) {
+		compressedValid = false;
+		if (numberOfDocuments == itemOffsets.length) {
+			ensureCapacity(itemOffsets.length << 1);
+		}
+		itemOffsets[numberOfDocuments] = body.size();
+		indices[numberOfDocuments] = index;
+		types[numberOfDocuments] = type;
+		ids[numberOfDocuments] = id;
+		enqueueTimes[numberOfDocuments] = enqueueTime;
+	}
+
+	private void ensureCapacity(int items) {
+		if (items > itemOffsets.length) {
+			itemOffsets = Arrays.copyOf(itemOffsets, items);
+			documentOffsets = Arrays.copyOf(documentOffsets, items);
+			indices = Arrays.copyOf(indices, items);
+			types = Arrays.copyOf(types, items);
+			ids = Arrays.copyOf(ids, items);
+			enqueueTimes = Arrays.copyOf(enqueueTimes, items);
+		}
+	}
+
+	// end of the item in the body, including the separator of the document
+	private int getItemEnd(int item) {
+		return (item + 1 < numberOfDocuments) ? itemOffsets[item + 1] : body.size();
+	}
+
+	/**
+	 * @param item the position of the item in the bulk
+	 * @return a copy of the document bytes of the item, without the separator
+	 */
+	public byte[] getDocument(int item) {
+		return Arrays.copyOfRange(body.getBuffer(), documentOffsets[item], getItemEnd(item) - 1);
+	}
+
+	public String getIndex(int item) {
+		return indices[item];
+	}
+
+	public String getType(int item) {
+		return types[item];
+	}
+
+	// the document id of the item, or null if the id is generated by the server
+	public String getId(int item) {
+		return ids[item];
+	}
+
+	// the System.nanoTime() when the item was added to the first bulk
+	public long getEnqueueTime(int item) {
+		return enqueueTimes[item];
+	}
+
+	private byte[] getActionStart(String index, String type) {
+		Map<String, byte[]> types = actionCache.get(index);
+		if (types == null) {
+			types = new HashMap<String, byte[]>();
+			actionCache.put(index, types);
+		}
+		byte[] action = types.get(type);
+		if (action == null) {
+			DocumentWriter w = format.createWriter(64);
+			w.writeHeader();
+			w.writeStartObject();
+			w.writeFieldName(w.encodeName("index"));
+			w.writeStartObject();
+			w.writeFieldName(w.encodeName("_index"));
+			w.writeString(index);
+			w.writeSeparator();
+			w.writeFieldName(w.encodeName("_type"));
+			w.writeString(type);
+			action = Arrays.copyOf(w.getBuffer(), w.size());
+			types.put(type, action);
+		}
+		return action;
+	}
+
+	public boolean isEmpty() {
+		return numberOfDocuments == 0;
+	}
+
+	public int getNumberOfDocuments() {
+		return numberOfDocuments;
+	}
+
+	/**
+	 * @return the buffer holding the request body, only the first getSizeInBytes() bytes are valid
+	 */
+	public byte[] getBuffer() {
+		return body.getBuffer();
+	}
+
+	public int getSizeInBytes() {
+		return body.size();
+	}
+
+	/**
+	 * remove all documents, the buffer and the action cache are kept
+	 */
+	public void reset() {
+		body.reset();
+		// release the id strings, the index and type names are few and shared
+		Arrays.fill(ids, 0, numberOfDocuments, null);
+		numberOfDocuments = 0;
+		compressedValid = false;
+	}
+
+	/**
+	 * free the native memory of the deflater and the compressed body. Must be called when a bulk that was sent compressed
+	 * is no longer used, the deflater is not freed until the next garbage collection otherwise.
+	 * The bulk stays usable, the deflater is created again if the bulk is compressed again.
+	 */
+	public void release() {
+		if (null != deflater) {
+			deflater.end();
+			deflater = null;
+		}
+		compressedBody = null;
+		compressedValid = false;
+	}
+
+	/**
+	 * write the body and the metadata of the items. The enqueue times are written as age, because
+	 * System.nanoTime() values cannot be compared between processes.
+	 * @param out the target
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		long now = System.nanoTime();
+		out.writeLong(System.currentTimeMillis());
+		out.writeInt(numberOfDocuments);
+		out.writeInt(body.size());
+		out.write(body.getBuffer(), 0, body.size());
+		for (int i = 0; i < numberOfDocuments; i++) {
+			out.writeInt(itemOffsets[i]);
+			out.writeInt(documentOffsets[i]);
+			out.writeUTF(indices[i]);
+			writeNullable(out, types[i]);
+			writeNullable(out, ids[i]);
+			out.writeLong(now - enqueueTimes[i]);
+		}
+	}
+
+	/**
+	 * replace the content of the bulk by a bulk written with writeTo(). The time between writing and reading is added to the age of the items.
+	 * @param in the source
+	 */
+	public void readFrom(DataInput in) throws IOException {
+		reset();
+		long now = System.nanoTime();
+		long stored = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - in.readLong()));
+		int documents = in.readInt();
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		body.writeRaw(bytes);
+		ensureCapacity(documents);
+		for (int i = 0; i < documents; i++) {
+			itemOffsets[i] = in.readInt();
+			documentOffsets[i] = in.readInt();
+			indices[i] = in.readUTF();
+			types[i] = readNullable(in);
+			ids[i] = readNullable(in);
+			enqueueTimes[i] = now - stored - in.readLong();
+		}
+		numberOfDocuments = documents;
+	}
+
+	private static void writeNullable(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * compress the body with gzip. The result is kept, so the body is compressed only once if the bulk is sent again.
+	 * The deflater and the buffer are reused for further bulks.
+	 * @param level the compression level from 1 (fastest) to 9 (best compression)
+	 * @return the buffer holding the compressed body, only the first size() bytes of its array are valid
+	 */
+	public CompressedBody getCompressedBody(int level) {
+		if (compressedValid) {
+			return compressedBody;
+		}
+		if (null == compressedBody) {
+			compressedBody = new CompressedBody(Math.max(1024, body.size() / 4));
+			deflater = new Deflater(level, true);
+		} else {
+			deflater.reset();
+			deflater.setLevel(level);
+		}
+		compressedBody.reset();
+		compressedBody.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+		crc.reset();
+		crc.update(body.getBuffer(), 0, body.size());
+		deflater.setInput(body.getBuffer(), 0, body.size());
+		deflater.finish();
+		compressedBody.deflate(deflater);
+		// the trailer holds the checksum and the uncompressed size
+		compressedBody.writeIntLE((int) crc.getValue());
+		compressedBody.writeIntLE(body.size());
+		compressedValid = true;
+		return compressedBody;
+	}
+
+	/**
+	 * Growable byte buffer for the compressed body. The deflater writes directly into its array,
+	 * which is passed to the HTTP entity without copying.
+	 */
+	static class CompressedBody extends ByteArrayOutputStream
+	{
+		CompressedBody(int initialCapacity) {
+			super(initialCapacity);
+		}
+
+		byte[] getBuffer() {
+			return buf;
+		}
+
+		void deflate(Deflater deflater) {
+			while (!deflater.finished()) {
+				if (count == buf.length) {
+					buf = Arrays.copyOf(buf, buf.length << 1);
+				}
+				count += deflater.deflate(buf, count, buf.length - count);
+			}
+		}
+
+		void writeIntLE(int value) {
+			write(value);
+			write(value >>> 8);
+			write(value >>> 16);
+			write(value >>> 24);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Data structure describing a completed bulk request
+ */
+public class BulkStatistics
+{
+	private final int documents;
+	private final long sizeInBytes;
+	private final long latencyNanos;
+	private final int rejectedItems;
+	private final int failedItems;
+	private final boolean requestFailed;
+
+	public BulkStatistics(int documents, long sizeInBytes, long latencyNanos, int rejectedItems, int failedItems, boolean requestFailed) {
+		this.documents = documents;
+		this.sizeInBytes = sizeInBytes;
+		this.latencyNanos = latencyNanos;
+		this.rejectedItems = rejectedItems;
+		this.failedItems = failedItems;
+		this.requestFailed = requestFailed;
+	}
+
+	// number of documents in the bulk
+	public int getDocuments() {
+		return documents;
+	}
+
+	// size of the request body
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	// time from sending the request until the response was received, including retries
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	// number of items rejected by the server because of a full write queue (HTTP 429)
+	public int getRejectedItems() {
+		return rejectedItems;
+	}
+
+	// number of items that failed for any reason, including the rejected items
+	public int getFailedItems() {
+		return failedItems;
+	}
+
+	// true if no response was received from any node
+	public boolean isRequestFailed() {
+		return requestFailed;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkStatistics [documents=" + documents + ", sizeInBytes=" + sizeInBytes + ", latencyNanos=" + latencyNanos
+				+ ", rejectedItems=" + rejectedItems + ", failedItems=" + failedItems + ", requestFailed=" + requestFailed + "]";
+	}
+}
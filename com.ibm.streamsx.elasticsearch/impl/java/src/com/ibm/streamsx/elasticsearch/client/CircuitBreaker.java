@@ -0,0 +1,107 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * The circuit breaker of one node.
+ *
+ * The circuit is closed while the node works. It opens after a number of consecutive failed requests, then the node
+ * receives no requests and is probed in the background instead. If a probe succeeds, the circuit is half open and
+ * a single trial request is sent to the node, further requests are blocked until it completes:
+ * a successful request closes the circuit, a failed request opens it again.
+ */
+class CircuitBreaker
+{
+	/**
+	 * the states of a circuit, the value is used in metrics
+	 */
+	enum State
+	{
+		CLOSED(0),
+		HALF_OPEN(1),
+		OPEN(2);
+
+		private final int value;
+
+		private State(int value) {
+			this.value = value;
+		}
+
+		int getValue() {
+			return value;
+		}
+	}
+
+	private final int failureThreshold;
+	private State state = State.CLOSED;
+	private int consecutiveFailures = 0;
+	// true while the trial request of a half open circuit is in flight
+	private boolean trialInFlight = false;
+
+	/**
+	 * @param failureThreshold the number of consecutive failures that open the circuit, 0 to never open it
+	 */
+	CircuitBreaker(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return true if requests may be sent to the node
+	 */
+	synchronized boolean isRequestAllowed() {
+		return state == State.CLOSED || (state == State.HALF_OPEN && !trialInFlight);
+	}
+
+	/**
+	 * a request is about to be sent to the node. If the circuit is half open, the request becomes the trial request.
+	 * @return false if the request is not allowed, because the circuit is open or the trial request is already in flight
+	 */
+	synchronized boolean tryAcquire() {
+		if (!isRequestAllowed()) {
+			return false;
+		}
+		if (state == State.HALF_OPEN) {
+			trialInFlight = true;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the state changed
+	 */
+	synchronized boolean recordSuccess() {
+		consecutiveFailures = 0;
+		return setState(State.CLOSED);
+	}
+
+	/**
+	 * @return true if the state changed
+	 */
+	synchronized boolean recordFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || (failureThreshold > 0 && consecutiveFailures >= failureThreshold)) {
+			return setState(State.OPEN);
+		}
+		return false;
+	}
+
+	/**
+	 * a probe of an open node succeeded, requests may be sent to try the node
+	 * @return true if the state changed
+	 */
+	synchronized boolean recordProbeSuccess() {
+		if (state == State.OPEN) {
+			return setState(State.HALF_OPEN);
+		}
+		return false;
+	}
+
+	private boolean setState(State newState) {
+		boolean changed = state != newState;
+		state = newState;
+		trialInFlight = false;
+		return changed;
+	}
+}
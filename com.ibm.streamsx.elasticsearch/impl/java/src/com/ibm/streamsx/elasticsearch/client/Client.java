@@ -1,5 +1,8 @@
 package com.ibm.streamsx.elasticsearch.client;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -14,6 +17,28 @@ public interface Client
 	 */
 	void setLogger(Logger logger);
 
+	/**
+	 * The client shall inform this listener about the outcome of each bulk request
+	 */
+	void setBulkListener(BulkListener listener);
+
+	/**
+	 * The client shall pass each document that could not be indexed to this listener
+	 */
+	void setFailedDocumentListener(FailedDocumentListener listener);
+
+	/**
+	 * The client shall inform this listener about the documents acknowledged by the server
+	 * @param listener the listener
+	 * @param withDocuments true if the results of the single documents are needed, otherwise only the counts are provided
+	 */
+	void setAcknowledgementListener(AcknowledgementListener listener, boolean withDocuments);
+
+	/**
+	 * Threads used by the client to send bulks asynchronously shall be created by this factory
+	 */
+	void setThreadFactory(ThreadFactory threadFactory);
+
 	/**
 	 * Store the configuration in the client 
 	 * @param config client configuration
@@ -33,7 +58,7 @@ public interface Client
 	boolean init() throws Exception;
 	
 	/**
-	 * Add new document to an existing bulk, if the bulk does not exist it must be created
+	 * Add new JSON document to an existing bulk, if the bulk does not exist it must be created. Only supported for the JSON content format.
 	 * @param idToInsert 
 	 * @param typeToInsert 
 	 * @param indexToInsert 
@@ -41,10 +66,54 @@ public interface Client
 	void bulkIndexAddDocument(String document, String indexToInsert, String typeToInsert, String idToInsert);
 	
 	/**
-	 * send the bulk to the ES server
+	 * Add new document, encoded in the content format of the configuration, to an existing bulk. If the bulk does not exist it must be created.
+	 * The client must not keep a reference to the array, the caller reuses it for the next document.
+	 * @param document the buffer containing the document
+	 * @param offset the start of the document in the buffer
+	 * @param length the number of bytes of the document
+	 * @param indexToInsert 
+	 * @param typeToInsert 
+	 * @param idToInsert 
+	 */
+	void bulkIndexAddDocument(byte[] document, int offset, int length, String indexToInsert, String typeToInsert, String idToInsert);
+	
+	/**
+	 * Add new document, encoded in the content format of the configuration, to an existing bulk. If the bulk does not exist it must be created.
+	 * The bytes are copied into the bulk, the client must not keep a reference to the buffer.
+	 * @param document the document between position and limit of the buffer, the position is not changed
+	 * @param indexToInsert 
+	 * @param typeToInsert 
+	 * @param idToInsert 
+	 */
+	void bulkIndexAddDocument(ByteBuffer document, String indexToInsert, String typeToInsert, String idToInsert);
+	
+	/**
+	 * @return the size of the request body of the current bulk in bytes, including action metadata
+	 */
+	int getBulkSizeInBytes();
+	
+	/**
+	 * send the bulk to the ES server. If the client sends bulks asynchronously, the bulk is handed over to a 
+	 * sender thread and the method returns immediately, unless the maximum number of in-flight bulks is reached.
+	 * In this case the method blocks until a bulk is completed.
 	 */
 	void bulkIndexSend();
 	
+	/**
+	 * send the bulk split into sub-bulks of consecutive documents, which are sent in parallel over different connections.
+	 * The method returns when all sub-bulks and all bulks handed over to bulkIndexSend() are completed.
+	 * Bulks whose documents were not all indexed, although sending them again could succeed, are counted in
+	 * ClientMetrics.getIncompleteBulks(): the request failed, the items were rejected until the retries were used up,
+	 * or the bulk could not be spilled. Documents the server refused permanently, for example because of a mapping error, are not counted.
+	 * @param parallelism the maximum number of sub-bulks
+	 */
+	void bulkIndexSendParallel(int parallelism);
+	
+	/**
+	 * wait until all bulks handed over to bulkIndexSend() are completed
+	 */
+	void waitForPendingBulks();
+	
 	/**
 	 * Close client, clean up any resources left over
 	 */
@@ -7,8 +7,12 @@
 
 package com.ibm.streamsx.elasticsearch.client;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Data structure to hold client status metrics
+ * Data structure to hold client status metrics. The metrics are updated by the threads
+ * sending bulks and read by the operator, so all accessors are synchronized.
  */
 public class ClientMetrics
 {
@@ -16,52 +20,243 @@ public class ClientMetrics
 	private Long numInserts = 0l;
 	private Long totalFailedRequests = 0l;
 	private Long reconnectionCount = 0l;
+	private int inFlightBulks = 0;
+	private long retriedItems = 0;
+	private long failedItems = 0;
+	private long backoffTime = 0;
+	private long bytesSent = 0;
+	private long compressedBytesSent = 0;
+	private Map<String, Integer> nodeInFlightBulks = new HashMap<String, Integer>();
+	private Map<String, Long> nodeLatency = new HashMap<String, Long>();
+	private Map<String, Long> nodeFailedRequests = new HashMap<String, Long>();
+	private Map<String, Integer> nodeCircuitState = new HashMap<String, Integer>();
+	private int numberOfNodes = 0;
+	private long nodeDiscoveries = 0;
+	private long failedNodeDiscoveries = 0;
+	private int spillQueueBulks = 0;
+	private long spillQueueBytes = 0;
+	private long spilledBulks = 0;
+	private long replayedBulks = 0;
+	private long incompleteBulks = 0;
 
 	public static ClientMetrics getClientMetrics() {
 		return new ClientMetrics();
 	}
 
-	public boolean getIsConnected() {
+	public synchronized boolean getIsConnected() {
 		return isConnected;
 	}
 
-	public void setIsConnected(boolean isConnected) {
+	public synchronized void setIsConnected(boolean isConnected) {
 		this.isConnected = isConnected;
 	}
 
-	public long getNumInserts() {
+	public synchronized long getNumInserts() {
 		return numInserts;
 	}
 
-	public void setNumInserts(long numInserts) {
+	public synchronized void setNumInserts(long numInserts) {
 		this.numInserts = numInserts;
 	}
 
-	public void incrementNumInserts() {
+	public synchronized void incrementNumInserts() {
 		this.numInserts++;
 	}	
 	
-	public long getTotalFailedRequests() {
+	public synchronized long getTotalFailedRequests() {
 		return totalFailedRequests;
 	}
 
-	public void setTotalFailedRequests(long totalFailedRequests) {
+	public synchronized void setTotalFailedRequests(long totalFailedRequests) {
 		this.totalFailedRequests = totalFailedRequests;
 	}
 
-	public void incrementTotalFailedRequests() {
+	public synchronized void incrementTotalFailedRequests() {
 		this.totalFailedRequests++;
 	}	
 	
-	public long getReconnectionCount() {
+	public synchronized long getReconnectionCount() {
 		return reconnectionCount;
 	}
 
-	public void setReconnectionCount(long reconnectionCount) {
+	public synchronized void setReconnectionCount(long reconnectionCount) {
 		this.reconnectionCount = reconnectionCount;
 	}	
 
-	public void incrementReconnectionCount() {
+	public synchronized void incrementReconnectionCount() {
 		this.reconnectionCount++;
-	}	
+	}
+
+	public synchronized int getInFlightBulks() {
+		return inFlightBulks;
+	}
+
+	public synchronized void incrementInFlightBulks() {
+		this.inFlightBulks++;
+	}
+
+	public synchronized void decrementInFlightBulks() {
+		this.inFlightBulks--;
+	}
+
+	public synchronized int getNodeInFlightBulks(String node) {
+		Integer count = nodeInFlightBulks.get(node);
+		return (count != null) ? count : 0;
+	}
+
+	/**
+	 * @return a copy of the number of requests in flight for each node that has been used so far
+	 */
+	public synchronized Map<String, Integer> getNodeInFlightBulks() {
+		return new HashMap<String, Integer>(nodeInFlightBulks);
+	}
+
+	public synchronized void incrementNodeInFlightBulks(String node) {
+		nodeInFlightBulks.put(node, getNodeInFlightBulks(node) + 1);
+	}
+
+	public synchronized void decrementNodeInFlightBulks(String node) {
+		nodeInFlightBulks.put(node, getNodeInFlightBulks(node) - 1);
+	}
+
+	/**
+	 * @return a copy of the average bulk latency in milliseconds for each node that has been used so far
+	 */
+	public synchronized Map<String, Long> getNodeLatency() {
+		return new HashMap<String, Long>(nodeLatency);
+	}
+
+	public synchronized void setNodeLatency(String node, long latency) {
+		nodeLatency.put(node, latency);
+	}
+
+	/**
+	 * @return a copy of the number of failed requests for each node that has been used so far
+	 */
+	public synchronized Map<String, Long> getNodeFailedRequests() {
+		return new HashMap<String, Long>(nodeFailedRequests);
+	}
+
+	public synchronized void setNodeFailedRequests(String node, long failedRequests) {
+		nodeFailedRequests.put(node, failedRequests);
+	}
+
+	/**
+	 * @return a copy of the circuit state for each node that has been used so far: 0 closed, 1 half open, 2 open
+	 */
+	public synchronized Map<String, Integer> getNodeCircuitState() {
+		return new HashMap<String, Integer>(nodeCircuitState);
+	}
+
+	public synchronized void setNodeCircuitState(String node, int state) {
+		nodeCircuitState.put(node, state);
+	}
+
+	public synchronized long getRetriedItems() {
+		return retriedItems;
+	}
+
+	public synchronized void addRetriedItems(int count) {
+		this.retriedItems += count;
+	}
+
+	public synchronized long getFailedItems() {
+		return failedItems;
+	}
+
+	public synchronized void addFailedItems(int count) {
+		this.failedItems += count;
+	}
+
+	public synchronized long getBackoffTime() {
+		return backoffTime;
+	}
+
+	public synchronized void addBackoffTime(long time) {
+		this.backoffTime += time;
+	}
+
+	public synchronized long getBytesSent() {
+		return bytesSent;
+	}
+
+	public synchronized long getCompressedBytesSent() {
+		return compressedBytesSent;
+	}
+
+	/**
+	 * @param raw the size of the request body before compression
+	 * @param compressed the size of the request body on the wire, same as raw if the body is not compressed
+	 */
+	public synchronized void addBytesSent(long raw, long compressed) {
+		this.bytesSent += raw;
+		this.compressedBytesSent += compressed;
+	}
+
+	public synchronized int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	public synchronized void setNumberOfNodes(int numberOfNodes) {
+		this.numberOfNodes = numberOfNodes;
+	}
+
+	public synchronized long getNodeDiscoveries() {
+		return nodeDiscoveries;
+	}
+
+	public synchronized void incrementNodeDiscoveries() {
+		this.nodeDiscoveries++;
+	}
+
+	public synchronized long getFailedNodeDiscoveries() {
+		return failedNodeDiscoveries;
+	}
+
+	public synchronized void incrementFailedNodeDiscoveries() {
+		this.failedNodeDiscoveries++;
+	}
+
+	public synchronized int getSpillQueueBulks() {
+		return spillQueueBulks;
+	}
+
+	public synchronized void setSpillQueueBulks(int spillQueueBulks) {
+		this.spillQueueBulks = spillQueueBulks;
+	}
+
+	public synchronized long getSpillQueueBytes() {
+		return spillQueueBytes;
+	}
+
+	public synchronized void setSpillQueueBytes(long spillQueueBytes) {
+		this.spillQueueBytes = spillQueueBytes;
+	}
+
+	public synchronized long getSpilledBulks() {
+		return spilledBulks;
+	}
+
+	public synchronized void incrementSpilledBulks() {
+		this.spilledBulks++;
+	}
+
+	public synchronized long getReplayedBulks() {
+		return replayedBulks;
+	}
+
+	public synchronized void incrementReplayedBulks() {
+		this.replayedBulks++;
+	}
+
+	/**
+	 * @return the number of bulks whose documents were not all indexed, although sending them again could succeed
+	 */
+	public synchronized long getIncompleteBulks() {
+		return incompleteBulks;
+	}
+
+	public synchronized void incrementIncompleteBulks() {
+		this.incompleteBulks++;
+	}
 }
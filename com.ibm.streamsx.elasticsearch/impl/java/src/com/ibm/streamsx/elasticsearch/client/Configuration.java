@@ -10,6 +10,8 @@ package com.ibm.streamsx.elasticsearch.client;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.ibm.streamsx.elasticsearch.serializer.ContentFormat;
+
 /**
  * Data structure to hold client configuration data
  */
@@ -18,6 +20,12 @@ public class Configuration
 	// kept from original implementation
 	private int reconnectionPolicyCount = 1;
 	
+	// backoff between reconnection attempts
+	private long reconnectionInitialDelay = 1000L;
+	private double reconnectionBackoffMultiplier = 2.0;
+	private long reconnectionMaxDelay = 30000L;
+	private long reconnectionDeadline = 0L;
+	
 	// the nodes
 	private List<String> nodeList = new ArrayList<String>();
 	
@@ -29,6 +37,13 @@ public class Configuration
 	private boolean nodeDiscoveryEnabled = false;
 	private Long nodeDiscoveryInterval = 0l;
 	private String nodeDiscoveryFilter = null;
+	
+	// the strategy to choose the node for a request
+	private NodeSelectionStrategy nodeSelectionStrategy = NodeSelectionStrategy.ROUND_ROBIN;
+	
+	// circuit breaker per node
+	private int circuitBreakerFailureThreshold = 3;
+	private long circuitBreakerProbeInterval = 5000L;
 
 	// ssl related parameters 
 	private boolean sslEnabled = false;
@@ -44,6 +59,31 @@ public class Configuration
 	private int connectionTimeout = 20000;
 	private long maxConnectionIdleTime = 1500L;
 	
+	// bulks sent asynchronously, 0 means the bulks are sent by the calling thread
+	private int maxInFlightBulks = 0;
+	
+	// concurrent connections, 0 per node means limited by the total only 
+	private int maxConnections = 1;
+	private int maxConnectionsPerNode = 0;
+	
+	// retries of bulk items rejected by the server
+	private int maxItemRetries = 3;
+	private long itemRetryDelay = 100L;
+	
+	// gzip compression of request bodies
+	private boolean requestCompression = false;
+	private int compressionLevel = 6;
+	
+	// format of the documents and the bulk requests
+	private ContentFormat contentFormat = ContentFormat.JSON;
+	
+	// the HTTP client used to send requests
+	private HttpClientType httpClientType = HttpClientType.BLOCKING;
+	
+	// bulks that cannot be sent are kept in this directory, null to disable spilling
+	private String spillDirectory = null;
+	private long spillMaxSize = 1024L * 1024L * 1024L;
+	
 	public static Configuration getDefaultConfiguration() {
 		return new Configuration();
 	}
@@ -73,6 +113,38 @@ public class Configuration
 		this.reconnectionPolicyCount = reconnectionPolicyCount;
 	}
 
+	public long getReconnectionInitialDelay() {
+		return reconnectionInitialDelay;
+	}
+
+	public void setReconnectionInitialDelay(long reconnectionInitialDelay) {
+		this.reconnectionInitialDelay = reconnectionInitialDelay;
+	}
+
+	public double getReconnectionBackoffMultiplier() {
+		return reconnectionBackoffMultiplier;
+	}
+
+	public void setReconnectionBackoffMultiplier(double reconnectionBackoffMultiplier) {
+		this.reconnectionBackoffMultiplier = reconnectionBackoffMultiplier;
+	}
+
+	public long getReconnectionMaxDelay() {
+		return reconnectionMaxDelay;
+	}
+
+	public void setReconnectionMaxDelay(long reconnectionMaxDelay) {
+		this.reconnectionMaxDelay = reconnectionMaxDelay;
+	}
+
+	public long getReconnectionDeadline() {
+		return reconnectionDeadline;
+	}
+
+	public void setReconnectionDeadline(long reconnectionDeadline) {
+		this.reconnectionDeadline = reconnectionDeadline;
+	}
+
 	public String getUserName() {
 		return userName;
 	}
@@ -113,6 +185,30 @@ public class Configuration
 		this.nodeDiscoveryFilter = nodeDiscoveryFilter;
 	}
 
+	public NodeSelectionStrategy getNodeSelectionStrategy() {
+		return nodeSelectionStrategy;
+	}
+
+	public void setNodeSelectionStrategy(NodeSelectionStrategy nodeSelectionStrategy) {
+		this.nodeSelectionStrategy = nodeSelectionStrategy;
+	}
+
+	public int getCircuitBreakerFailureThreshold() {
+		return circuitBreakerFailureThreshold;
+	}
+
+	public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+		this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+	}
+
+	public long getCircuitBreakerProbeInterval() {
+		return circuitBreakerProbeInterval;
+	}
+
+	public void setCircuitBreakerProbeInterval(long circuitBreakerProbeInterval) {
+		this.circuitBreakerProbeInterval = circuitBreakerProbeInterval;
+	}
+
 	public boolean isSslEnabled() {
 		return sslEnabled;
 	}
@@ -200,17 +296,111 @@ public class Configuration
 	public void setMaxConnectionIdleTime(long maxConnectionIdleTime) {
 		this.maxConnectionIdleTime = maxConnectionIdleTime;
 	}
+
+	public int getMaxInFlightBulks() {
+		return maxInFlightBulks;
+	}
+
+	public void setMaxInFlightBulks(int maxInFlightBulks) {
+		this.maxInFlightBulks = maxInFlightBulks;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnectionsPerNode() {
+		return maxConnectionsPerNode;
+	}
+
+	public void setMaxConnectionsPerNode(int maxConnectionsPerNode) {
+		this.maxConnectionsPerNode = maxConnectionsPerNode;
+	}
+
+	public int getMaxItemRetries() {
+		return maxItemRetries;
+	}
+
+	public void setMaxItemRetries(int maxItemRetries) {
+		this.maxItemRetries = maxItemRetries;
+	}
+
+	public boolean isRequestCompression() {
+		return requestCompression;
+	}
+
+	public void setRequestCompression(boolean requestCompression) {
+		this.requestCompression = requestCompression;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	public ContentFormat getContentFormat() {
+		return contentFormat;
+	}
+
+	public void setContentFormat(ContentFormat contentFormat) {
+		this.contentFormat = contentFormat;
+	}
+
+	public HttpClientType getHttpClientType() {
+		return httpClientType;
+	}
+
+	public void setHttpClientType(HttpClientType httpClientType) {
+		this.httpClientType = httpClientType;
+	}
+
+	public String getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	public void setSpillDirectory(String spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	public long getSpillMaxSize() {
+		return spillMaxSize;
+	}
+
+	public void setSpillMaxSize(long spillMaxSize) {
+		this.spillMaxSize = spillMaxSize;
+	}
+
+	public long getItemRetryDelay() {
+		return itemRetryDelay;
+	}
+
+	public void setItemRetryDelay(long itemRetryDelay) {
+		this.itemRetryDelay = itemRetryDelay;
+	}
 	
 	@Override
 	public String toString() {
-		return "Configuration [reconnectionPolicyCount=" + reconnectionPolicyCount + ", nodeList=" + nodeList
+		return "Configuration [reconnectionPolicyCount=" + reconnectionPolicyCount + ", reconnectionInitialDelay=" + reconnectionInitialDelay
+				+ ", reconnectionBackoffMultiplier=" + reconnectionBackoffMultiplier + ", reconnectionMaxDelay=" + reconnectionMaxDelay 
+				+ ", reconnectionDeadline=" + reconnectionDeadline + ", nodeList=" + nodeList
 				+ ", userName=" + userName + ", password=" + password + ", nodeDiscoveryEnabled=" + nodeDiscoveryEnabled
-				+ ", nodeDiscoveryInterval=" + nodeDiscoveryInterval + ", nodeDiscoveryFilter=" + nodeDiscoveryFilter
+				+ ", nodeDiscoveryInterval=" + nodeDiscoveryInterval + ", nodeDiscoveryFilter=" + nodeDiscoveryFilter + ", nodeSelectionStrategy=" + nodeSelectionStrategy
+				+ ", circuitBreakerFailureThreshold=" + circuitBreakerFailureThreshold + ", circuitBreakerProbeInterval=" + circuitBreakerProbeInterval
 				+ ", sslEnabled=" + sslEnabled + ", sslTrustStore=" + sslTrustStore + ", sslTrustStorePassword="
 				+ sslTrustStorePassword + ", sslKeyStore=" + sslKeyStore + ", sslKeyStorePassword="
 				+ sslKeyStorePassword + ", sslTrustAllCertificates=" + sslTrustAllCertificates + ", sslVerifyHostname="
 				+ sslVerifyHostname + ", sslDebug=" + sslDebug + ", readTimeout=" + readTimeout + ", connectionTimeout="
-				+ connectionTimeout + ", maxConnectionIdleTime=" + maxConnectionIdleTime + ", getNodeList()="
+				+ connectionTimeout + ", maxConnectionIdleTime=" + maxConnectionIdleTime + ", maxInFlightBulks=" + maxInFlightBulks + ", maxConnections=" + maxConnections 
+				+ ", maxConnectionsPerNode=" + maxConnectionsPerNode + ", maxItemRetries=" + maxItemRetries + ", itemRetryDelay=" + itemRetryDelay 
+				+ ", requestCompression=" + requestCompression + ", compressionLevel=" + compressionLevel + ", contentFormat=" + contentFormat + ", httpClientType=" + httpClientType 
+				+ ", spillDirectory=" + spillDirectory + ", spillMaxSize=" + spillMaxSize + ", getNodeList()="
 				+ getNodeList() + "]";
 	}
 
@@ -0,0 +1,57 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Data structure describing a document that could not be indexed
+ */
+public class FailedDocument
+{
+	private final String index;
+	private final String type;
+	private final String id;
+	private final byte[] document;
+	private final int status;
+	private final String reason;
+
+	public FailedDocument(String index, String type, String id, byte[] document, int status, String reason) {
+		this.index = index;
+		this.type = type;
+		this.id = id;
+		this.document = document;
+		this.status = status;
+		this.reason = reason;
+	}
+
+	public String getIndex() {
+		return index;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	// the document id, or null if the id was to be generated by the server
+	public String getId() {
+		return id;
+	}
+
+	// the document bytes in the content format of the bulk
+	public byte[] getDocument() {
+		return document;
+	}
+
+	// HTTP status of the item or of the whole request, 0 if no response was received
+	public int getStatus() {
+		return status;
+	}
+
+	// error description from the server or from the client
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return "FailedDocument [index=" + index + ", type=" + type + ", id=" + id + ", size=" + document.length
+				+ ", status=" + status + ", reason=" + reason + "]";
+	}
+}
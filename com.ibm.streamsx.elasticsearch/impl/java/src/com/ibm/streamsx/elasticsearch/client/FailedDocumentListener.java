@@ -0,0 +1,14 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * Receives the documents that could not be indexed by a client implementation
+ */
+public interface FailedDocumentListener
+{
+	/**
+	 * called once for each document that failed permanently, after all retries.
+	 * This may be called by a sender thread and must not block.
+	 * @param document the failed document and the error
+	 */
+	void documentFailed(FailedDocument document);
+}
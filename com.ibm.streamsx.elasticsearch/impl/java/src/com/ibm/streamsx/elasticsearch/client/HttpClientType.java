@@ -0,0 +1,38 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * The HTTP clients used to send requests to the nodes
+ */
+public enum HttpClientType
+{
+	// the Apache HTTP client of Jest, one sender thread waits for each request in flight
+	BLOCKING("blocking"),
+	// the Apache asynchronous HTTP client, the requests are sent and the responses evaluated by the I/O threads of the client
+	ASYNC("async");
+
+	private final String parameterValue;
+
+	private HttpClientType(String parameterValue) {
+		this.parameterValue = parameterValue;
+	}
+
+	/**
+	 * @return the name used in operator parameters
+	 */
+	public String getParameterValue() {
+		return parameterValue;
+	}
+
+	/**
+	 * @param name the name of the client type as used in operator parameters, case is ignored
+	 * @return the client type, or null if the name is unknown
+	 */
+	public static HttpClientType fromName(String name) {
+		for (HttpClientType type : values()) {
+			if (type.parameterValue.equalsIgnoreCase(name)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,32 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * The status and the body of an HTTP response
+ */
+class HttpResult
+{
+	private final int statusCode;
+	private final String reasonPhrase;
+	private final String body;
+
+	HttpResult(int statusCode, String reasonPhrase, String body) {
+		this.statusCode = statusCode;
+		this.reasonPhrase = reasonPhrase;
+		this.body = body;
+	}
+
+	int getStatusCode() {
+		return statusCode;
+	}
+
+	String getReasonPhrase() {
+		return reasonPhrase;
+	}
+
+	/**
+	 * @return the response body, or null if the response has no body
+	 */
+	String getBody() {
+		return body;
+	}
+}
@@ -0,0 +1,43 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.io.IOException;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Sends HTTP requests to the nodes. The response body is read completely, so the connection is released 
+ * when the result is passed to the caller.
+ */
+interface HttpTransport
+{
+	/**
+	 * receives the outcome of a request sent with {@link HttpTransport#execute(HttpUriRequest, Callback)}
+	 */
+	interface Callback
+	{
+		void completed(HttpResult result);
+
+		void failed(IOException e);
+	}
+
+	/**
+	 * send the request and wait for the response
+	 * @param request the request
+	 * @return the response
+	 * @throws IOException if no response is received
+	 */
+	HttpResult execute(HttpUriRequest request) throws IOException;
+
+	/**
+	 * send the request, the callback is called when the response is received or the request failed.
+	 * A blocking implementation calls the callback before the method returns.
+	 * @param request the request
+	 * @param callback the callback
+	 */
+	void execute(HttpUriRequest request, Callback callback);
+
+	/**
+	 * release the resources of the transport
+	 */
+	void close() throws IOException;
+}
@@ -1,43 +1,91 @@
 package com.ibm.streamsx.elasticsearch.client;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.net.ConnectException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 
 import org.apache.http.HttpHeaders;
 import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.TrustStrategy;
 import org.apache.log4j.Logger;
 
+import com.google.gson.Gson;
+import com.ibm.streamsx.elasticsearch.serializer.ContentFormat;
 
-import io.searchbox.action.AbstractAction;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
-import io.searchbox.client.JestResult;
 import io.searchbox.client.config.HttpClientConfig;
-import io.searchbox.client.config.exception.CouldNotConnectException;
+import io.searchbox.client.http.JestHttpClient;
 import io.searchbox.core.Bulk;
-import io.searchbox.core.Bulk.Builder;
 import io.searchbox.core.BulkResult;
 import io.searchbox.core.BulkResult.BulkResultItem;
-import io.searchbox.core.Index;
 
 /**
  * implementation for the JEST client library
+ * 
+ * The JEST client factory is used to set up the HTTP client with the SSL and connection options.
+ * Bulk requests are assembled as NDJSON or SMILE body by this class and posted with the underlying HTTP client,
+ * to avoid building and serializing a JEST action object per document.
+ * 
+ * If the configuration allows in-flight bulks, filled bulks are sent by a pool of sender threads, while the
+ * caller fills the next bulk. The bulk buffers are recycled, the number of buffers bounds the number
+ * of bulks in flight. The number of sender threads is the maximum number of connections, so bulks are
+ * sent in parallel to different nodes.
  *
+ * With the asynchronous HTTP client, the Jest client is not created and there are no sender threads. A bulk is sent
+ * and its response is evaluated in the callbacks of the I/O threads of the HTTP client, waits for retries are scheduled.
+ * The retry and failover logic is the same as with the blocking client.
+ *
+ * If a spill directory is configured, a bulk that cannot be sent to any node is written to a queue on disk instead of
+ * failing its documents. While the queue is not empty, new bulks are appended to it too, so they do not overtake the spilled bulks.
+ * A replay thread sends the bulks from the queue, oldest first, and removes a bulk when a node responded to it.
+ * Bulks left in the queue when the client is closed are sent after the next start.
+ *
+ * If node discovery is enabled, the list of nodes is replaced periodically by the nodes found with the nodes info API.
+ * The configured nodes are only used as seeds for the discovery then.
  */
 public class JESTClient implements Client {
 	
@@ -48,10 +96,62 @@ public class JESTClient implements Client {
 	
 	// internal properties
 	private JestClient client = null;
-	private Builder bulkBuilder = null;
-	private int bulkSize = 0;
+	// sends the requests, either with the HTTP client of Jest or with an asynchronous HTTP client
+	private HttpTransport transport = null;
+	private BulkRequest bulk = null;
 	private final static String defaultType = "_doc";
-	private int numberOfNodes = 1;
+	private ContentType bulkContentType = null;
+	private final static int TOO_MANY_REQUESTS = 429;
+	private final static int SERVICE_UNAVAILABLE = 503;
+	private final static String REJECTED_EXECUTION = "es_rejected_execution_exception";
+	// the current nodes, an immutable list that is replaced by the node discovery
+	private volatile List<String> nodes = null;
+	private List<String> seedNodes = null;
+	private NodeDiscovery nodeDiscovery = null;
+	// runs the node discovery and the probes of nodes with open circuit
+	private ScheduledExecutorService scheduler = null;
+	private RequestConfig probeConfig = null;
+	private NodeSelector nodeSelector = null;
+	private int maxConnectionsPerNode = 0;
+	
+	// used to parse the bulk response into a BulkResult
+	private final Bulk bulkResultFactory = new Bulk.Builder().build();
+	private final Gson gson = new Gson();
+	
+	// informed about the outcome of each bulk
+	private BulkListener bulkListener = null;
+	// receives the documents that failed permanently, the documents are only copied if it is set
+	private FailedDocumentListener failedDocumentListener = null;
+	// informed about the acknowledged documents, the bulks are numbered in the order they are filled
+	private AcknowledgementListener acknowledgementListener = null;
+	private boolean acknowledgeDocuments = false;
+	private final AtomicLong nextBulkId = new AtomicLong(0);
+	
+	// asynchronous sending, bulk buffers not in use are kept in the free queue
+	private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+	private ExecutorService sender = null;
+	private BlockingQueue<BulkRequest> freeBulks = null;
+	private final Object pendingLock = new Object();
+	private int pendingBulks = 0;
+	// sends the sub-bulks of bulkIndexSendParallel(), created on first use
+	private ExecutorService partSender = null;
+	
+	// waiting between retries, ends early when the client is closed
+	private BackoffPolicy backoffPolicy = null;
+	// delays between the retries of rejected items, limited like the reconnection delays
+	private BackoffPolicy itemRetryPolicy = null;
+	private final CountDownLatch closed = new CountDownLatch(1);
+	// the waits of bulks sent with the asynchronous client, they end early when the client is closed.
+	// They have an own scheduler, so they are not delayed by a node discovery or probe waiting for a response
+	private ScheduledExecutorService delayScheduler = null;
+	private final Set<DelayedAction> delayedActions = ConcurrentHashMap.newKeySet();
+	private final static long NEXT_NODE = -1;
+	private final static long GIVE_UP = -2;
+	
+	// bulks that could not be sent, kept on disk until the replay thread sent them
+	private SpillQueue spillQueue = null;
+	private Thread replayer = null;
+	private final static long MIN_REPLAY_DELAY = 1000;
 	
 	// http basic authentication 
 	private boolean useBasicAuth = false;
@@ -79,6 +179,27 @@ public class JESTClient implements Client {
 		this.logger = logger;
 	}
 
+	@Override
+	public void setBulkListener(BulkListener listener) {
+		this.bulkListener = listener;
+	}
+
+	@Override
+	public void setFailedDocumentListener(FailedDocumentListener listener) {
+		this.failedDocumentListener = listener;
+	}
+
+	@Override
+	public void setAcknowledgementListener(AcknowledgementListener listener, boolean withDocuments) {
+		this.acknowledgementListener = listener;
+		this.acknowledgeDocuments = withDocuments;
+	}
+
+	@Override
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+	}
+
 	// validate the configuration, if something is wrong log error and return false
 	// if false is returned, the caller should assume this as an unrecoverable error and stop execution
 	@Override
@@ -105,7 +226,19 @@ public class JESTClient implements Client {
 
 	    JestClientFactory factory = new JestClientFactory();
 	    client = null;
-	    numberOfNodes = cfg.getNodeList().size();
+	    seedNodes = Collections.unmodifiableList(cfg.getNodeList());
+	    nodes = seedNodes;
+	    clientMetrics.setNumberOfNodes(nodes.size());
+	    ContentFormat format = cfg.getContentFormat();
+	    bulk = new BulkRequest(format);
+	    bulkContentType = ContentType.create(format.getMimeType());
+	    backoffPolicy = new BackoffPolicy(cfg.getReconnectionInitialDelay(), cfg.getReconnectionBackoffMultiplier(), cfg.getReconnectionMaxDelay(), cfg.getReconnectionDeadline());
+	    itemRetryPolicy = new BackoffPolicy(cfg.getItemRetryDelay(), 2.0, Math.max(cfg.getItemRetryDelay(), cfg.getReconnectionMaxDelay()), 0);
+	    
+	    // the pooling connection manager enforces the connection limits, a node may use all connections if it has no own limit
+	    maxConnectionsPerNode = cfg.getMaxConnectionsPerNode();
+	    int maxConnectionsPerRoute = (maxConnectionsPerNode > 0) ? Math.min(maxConnectionsPerNode, cfg.getMaxConnections()) : cfg.getMaxConnections();
+	    nodeSelector = new NodeSelector(cfg.getNodeSelectionStrategy(), maxConnectionsPerNode, cfg.getCircuitBreakerFailureThreshold());
 	       
 	    // create basic authentication header if needed
         if (cfg.getUserName() != null) {
@@ -115,6 +248,9 @@ public class JESTClient implements Client {
         	useBasicAuth = true;
         }
 	    
+		SSLContext sslContext = null;
+		HostnameVerifier hostnameVerifier = null;
+		
 		// use ssl 
 		if (cfg.isSslEnabled()) {
 
@@ -127,7 +263,6 @@ public class JESTClient implements Client {
 				System.setProperty("javax.net.debug","true");
 			}
 			
-			SSLContext sslContext = null;
 			SSLConnectionSocketFactory sslSocketFactory = null;
 			
 			// trust all certificates , use use supplied truststore, or use java defaults
@@ -176,7 +311,7 @@ public class JESTClient implements Client {
 			
 			// verify hostname or not
 			if (!cfg.isSslVerifyHostname()) {
-				HostnameVerifier hostnameVerifier = NoopHostnameVerifier.INSTANCE;
+				hostnameVerifier = NoopHostnameVerifier.INSTANCE;
 				sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
 			} else {
 				sslSocketFactory = new SSLConnectionSocketFactory(sslContext);
@@ -184,7 +319,9 @@ public class JESTClient implements Client {
 
        	  	factory.setHttpClientConfig(new HttpClientConfig.Builder(cfg.getNodeList())
         	  		.sslSocketFactory(sslSocketFactory)
-        	  		.multiThreaded(false)
+        	  		.multiThreaded(true)
+        	  		.maxTotalConnection(cfg.getMaxConnections())
+        	  		.defaultMaxTotalConnectionPerRoute(maxConnectionsPerRoute)
        	  			.readTimeout(cfg.getReadTimeout())
        	  			.connTimeout(cfg.getConnectionTimeout())
        	  			.maxConnectionIdleTime(cfg.getMaxConnectionIdleTime(), TimeUnit.MILLISECONDS)
@@ -193,27 +330,139 @@ public class JESTClient implements Client {
 	    // use HTTP only 
 		} else {
        	  	factory.setHttpClientConfig(new HttpClientConfig.Builder(cfg.getNodeList())
-       	  			.multiThreaded(false)
+       	  			.multiThreaded(true)
+       	  			.maxTotalConnection(cfg.getMaxConnections())
+       	  			.defaultMaxTotalConnectionPerRoute(maxConnectionsPerRoute)
        	  			.readTimeout(cfg.getReadTimeout())
        	  			.connTimeout(cfg.getConnectionTimeout())
        	  			.maxConnectionIdleTime(cfg.getMaxConnectionIdleTime(), TimeUnit.MILLISECONDS)
         	  		.build());
 		}
         
-        client = factory.getObject();
+        boolean async = cfg.getHttpClientType() == HttpClientType.ASYNC;
+        if (async) {
+        	transport = new AsyncHttpTransport(cfg, maxConnectionsPerRoute, sslContext, hostnameVerifier, threadFactory);
+        } else {
+        	client = factory.getObject();
+        	if (null == client) {
+        		logger.error("Init error: unknown problem, client is 'null'");
+        		return false;
+        	}
+        	transport = new BlockingHttpTransport(((JestHttpClient) client).getHttpClient());
+        }
         clientMetrics.setIsConnected(true);
-
-        if (null == client) {
-        	logger.error("Init error: unknown problem, client is 'null'");
-        	return false;
+        
+        if (cfg.isNodeDiscoveryEnabled() || cfg.getCircuitBreakerFailureThreshold() > 0) {
+        	scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+        if (async) {
+        	delayScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+        
+        // discover the nodes in the background, the first discovery runs immediately
+        if (cfg.isNodeDiscoveryEnabled()) {
+        	nodeDiscovery = new NodeDiscovery(transport, cfg.isSslEnabled(), cfg.getNodeDiscoveryFilter(), useBasicAuth ? authHeader : null);
+        	scheduler.scheduleWithFixedDelay(new Runnable() {
+        		@Override
+        		public void run() {
+        			discoverNodes();
+        		}
+        	}, 0, cfg.getNodeDiscoveryInterval(), TimeUnit.MILLISECONDS);
+        }
+        
+        // probe the nodes with open circuit in the background, a probe must not take longer than the probe interval
+        if (cfg.getCircuitBreakerFailureThreshold() > 0) {
+        	int probeTimeout = (int) Math.min(cfg.getCircuitBreakerProbeInterval(), Integer.MAX_VALUE);
+        	probeConfig = RequestConfig.custom()
+        			.setConnectTimeout((cfg.getConnectionTimeout() > 0) ? Math.min(cfg.getConnectionTimeout(), probeTimeout) : probeTimeout)
+        			.setSocketTimeout((cfg.getReadTimeout() > 0) ? Math.min(cfg.getReadTimeout(), probeTimeout) : probeTimeout)
+        			.setConnectionRequestTimeout(probeTimeout)
+        			.build();
+        	scheduler.scheduleWithFixedDelay(new Runnable() {
+        		@Override
+        		public void run() {
+        			probeNodes();
+        		}
+        	}, cfg.getCircuitBreakerProbeInterval(), cfg.getCircuitBreakerProbeInterval(), TimeUnit.MILLISECONDS);
+        }
+        
+        // one bulk is filled by the caller while the others are in flight, up to maxConnections of them are sent in parallel.
+        // The asynchronous client needs no sender threads, without bulks in flight the caller waits for each bulk
+        int maxInFlightBulks = async ? Math.max(1, cfg.getMaxInFlightBulks()) : cfg.getMaxInFlightBulks();
+        if (maxInFlightBulks > 0) {
+        	freeBulks = new ArrayBlockingQueue<BulkRequest>(maxInFlightBulks);
+        	for (int i = 0; i < maxInFlightBulks; i++) {
+        		freeBulks.add(new BulkRequest(format));
+        	}
+        	if (!async) {
+        		// one sender thread per connection
+        		sender = Executors.newFixedThreadPool(cfg.getMaxConnections(), threadFactory);
+        	}
+        }
+        
+        // bulks spilled by a previous run are replayed immediately
+        if (null != cfg.getSpillDirectory()) {
+        	spillQueue = new SpillQueue(new File(cfg.getSpillDirectory()), cfg.getSpillMaxSize());
+        	updateSpillMetrics();
+        	if (spillQueue.getRecords() > 0) {
+        		logger.info("Spill queue contains " + Integer.toString(spillQueue.getRecords()) + " bulks of a previous run, they are sent first");
+        	}
+        	replayer = threadFactory.newThread(new Runnable() {
+        		@Override
+        		public void run() {
+        			replaySpilledBulks();
+        		}
+        	});
+        	replayer.start();
         }
         return true;
 	}
 
 	@Override
 	public void close() {
+		// stop waiting for reconnection and retries
+		closed.countDown();
+		for (DelayedAction action : delayedActions) {
+			action.run();
+		}
+		if (null != scheduler) {
+			scheduler.shutdownNow();
+		}
+		if (null != delayScheduler) {
+			delayScheduler.shutdownNow();
+		}
+		if (null != freeBulks) {
+			waitForPendingBulks();
+			for (BulkRequest free : freeBulks) {
+				free.release();
+			}
+		}
+		if (null != bulk) {
+			bulk.release();
+		}
+		if (null != sender) {
+			sender.shutdown();
+		}
+		if (null != partSender) {
+			partSender.shutdown();
+		}
+		// the bulks in the spill queue are kept for the next run
+		if (null != replayer) {
+			try {
+				replayer.join();
+			} catch (InterruptedException e) {
+				logger.warn("Waiting for the replay of spilled bulks interrupted");
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (null != spillQueue) {
+			spillQueue.close();
+		}
 		try {
-			client.close();
+			transport.close();
+			if (null != client) {
+				client.close();
+			}
 		} catch (IOException e) {
 			logger.error("Exception during closing the JEST client, message: " + e.getMessage());
 			e.printStackTrace();
@@ -222,143 +471,937 @@ public class JESTClient implements Client {
 
 	@Override
 	public void bulkIndexAddDocument(String document, String indexToInsert, String typeToInsert, String idToInsert) {
-		// reset bulk builder
-		if (null == bulkBuilder) {
-			bulkBuilder = new Bulk.Builder().defaultIndex(indexToInsert).defaultType(typeToInsert);
+		if (bulk.getContentFormat() != ContentFormat.JSON) {
+			throw new IllegalStateException("Documents given as string can only be added to bulks in JSON format");
 		}
+		byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+		bulkIndexAddDocument(bytes, 0, bytes.length, indexToInsert, typeToInsert, idToInsert);
+	}
 
+	@Override
+	public void bulkIndexAddDocument(byte[] document, int offset, int length, String indexToInsert, String typeToInsert, String idToInsert) {
 		// set a default type , as types will be removed in ES7
 		// with ES6 only  one type per index is allowed. The default should be named _doc
 		String docType = defaultType;
 		if (null != typeToInsert) {
 			docType = typeToInsert;
 		}
-		
-		if (idToInsert != null) {
-			bulkBuilder.addAction(new Index.Builder(document).index(indexToInsert).type(docType).id(idToInsert).build());
-		} else {
-			bulkBuilder.addAction(new Index.Builder(document).index(indexToInsert).type(docType).build());
-		}
-		
-		bulkSize++;
+		bulk.add(document, offset, length, indexToInsert, docType, idToInsert);
 	}
 
-	// Method to send any request to ES, it handles connection retries and exceptions from the jest/apache http clients
-	private <T extends AbstractAction<E>, E extends JestResult> E executeRequest(T request) {
-		
-		int attempts = 0;
-		int nodesFailed = 0;
-		int reconnects = 0;
-		boolean retry = true;
-		E response = null;
-		boolean gotResponse = false;
-		
-		while (retry) {
+	@Override
+	public void bulkIndexAddDocument(ByteBuffer document, String indexToInsert, String typeToInsert, String idToInsert) {
+		bulk.add(document, indexToInsert, (null != typeToInsert) ? typeToInsert : defaultType, idToInsert);
+	}
+
+	@Override
+	public int getBulkSizeInBytes() {
+		return bulk.getSizeInBytes();
+	}
+
+	/**
+	 * ask the current nodes and then the seed nodes for the nodes of the cluster, until one of them responds. 
+	 * The node list is replaced, if the discovered list is not empty and differs from the current one.
+	 */
+	private void discoverNodes() {
+		List<String> current = nodes;
+		List<String> candidates = new ArrayList<String>(current);
+		for (String seed : seedNodes) {
+			if (!candidates.contains(seed)) {
+				candidates.add(seed);
+			}
+		}
+		for (String node : candidates) {
 			try {
-				response = client.execute(request);
-				gotResponse = true;
-			} catch (NoHttpResponseException e) {
-				logger.error("HTTP error. Cannot send request to server. Exception : " + e.getMessage());
-			} catch (CouldNotConnectException e) {
-				logger.error("Connect error. Cannot send request to server. Exception : " + e.getMessage());
-			} catch (IOException e) {
-				logger.error("IO error. Cannot send request to server. Exception : " + e.getMessage());
-				e.printStackTrace();
+				List<String> discovered = nodeDiscovery.discover(node);
+				clientMetrics.incrementNodeDiscoveries();
+				if (discovered.isEmpty()) {
+					logger.warn("Node discovery found no nodes matching the filter, keeping nodes " + current);
+				} else if (!discovered.equals(current)) {
+					logger.info("Node discovery changed the nodes from " + current + " to " + discovered);
+					nodes = Collections.unmodifiableList(discovered);
+					clientMetrics.setNumberOfNodes(discovered.size());
+				}
+				return;
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Node discovery failed on node " + node + ", message: " + e.getMessage());
 			}
-			attempts++;
-			
-			if (gotResponse) {
-				retry = false;
-				clientMetrics.setIsConnected(true);
-			} else {
-				clientMetrics.setIsConnected(false);
-				// if we have nodes left in the cluster, we try to immediately send the request to the next node
-				if (attempts < numberOfNodes) {
-					retry = true;
-					logger.error("Attempt: " + Integer.toString(attempts) + " failed, retrying without wait interval ...");
-				} else
-				// if all nodes failed, we try to reconnect with a wait interval 
-				{
-					reconnects++;
-					clientMetrics.incrementReconnectionCount();
-					if (reconnects <= cfg.getReconnectionPolicyCount()) {
-						logger.error("Attempt: " + Integer.toString(attempts) + " failed, retrying with wait, reconnect: " + Integer.toString(reconnects) + " ...");
-						retry = true;
-						try {
-							Thread.sleep(1000);
-						} catch (InterruptedException e) {
-							logger.warn("Thread.sleep interrupted");
-						}
-					} else {
-						retry = false;
-						logger.error("Attempt: " + Integer.toString(attempts) + " failed, giving up");
+		}
+		clientMetrics.incrementFailedNodeDiscoveries();
+	}
+
+	/**
+	 * send a HEAD request to each current node with open circuit. If the node responds without server error,
+	 * the circuit is half open and the next request is a trial of the node.
+	 */
+	private void probeNodes() {
+		for (String node : nodes) {
+			CircuitBreaker circuitBreaker = nodeSelector.getState(node).getCircuitBreaker();
+			if (circuitBreaker.getState() != CircuitBreaker.State.OPEN) {
+				continue;
+			}
+			HttpHead head = new HttpHead(node + "/");
+			head.setConfig(probeConfig);
+			if (useBasicAuth) {
+				head.setHeader(HttpHeaders.AUTHORIZATION, authHeader);
+			}
+			try {
+				int status = transport.execute(head).getStatusCode();
+				if (status < 500) {
+					if (circuitBreaker.recordProbeSuccess()) {
+						logger.info("Probe of node " + node + " succeeded, circuit is half open");
 					}
+				} else {
+					logger.debug("Probe of node " + node + " failed with status " + status);
 				}
+			} catch (IOException | RuntimeException e) {
+				logger.debug("Probe of node " + node + " failed, message: " + e.getMessage());
 			}
+			updateCircuitState(node);
 		}
-		
-		if (logger.isDebugEnabled()) {
-			nodesFailed = Math.min((attempts-1),numberOfNodes);
-			logger.debug("Nodes failed: " + Integer.toString(nodesFailed));
+	}
+
+	private void updateCircuitState(String node) {
+		clientMetrics.setNodeCircuitState(node, nodeSelector.getState(node).getCircuitBreaker().getState().getValue());
+	}
+
+	// choose the node for the next attempt, nodes that already failed for this request are avoided
+	private String beginRequest(Set<String> failedNodes) {
+		String node = nodeSelector.select(nodes, failedNodes);
+		clientMetrics.incrementNodeInFlightBulks(node);
+		nodeSelector.requestStarted(node);
+		return node;
+	}
+
+	// update the statistics and the circuit of the node after an attempt
+	private void completeRequest(String node, long startTime, boolean failed) {
+		if (nodeSelector.requestCompleted(node, System.nanoTime() - startTime, failed)) {
+			if (failed) {
+				logger.warn("Circuit of node " + node + " opened, no requests are sent to the node until a probe succeeds");
+			} else {
+				logger.info("Circuit of node " + node + " closed");
+			}
+		}
+		clientMetrics.decrementNodeInFlightBulks(node);
+		NodeSelector.NodeState state = nodeSelector.getState(node);
+		clientMetrics.setNodeLatency(node, TimeUnit.NANOSECONDS.toMillis((long) state.getAverageLatencyNanos()));
+		clientMetrics.setNodeFailedRequests(node, state.getFailedRequests());
+		updateCircuitState(node);
+	}
+
+	// post the bulk body to the node chosen by the node selection strategy
+	private BulkResult sendBulk(BulkRequest request, Set<String> failedNodes) throws IOException {
+		String node = beginRequest(failedNodes);
+		long startTime = System.nanoTime();
+		boolean failed = true;
+		try {
+			BulkResult result = toBulkResult(transport.execute(createBulkPost(request, node)));
+			failed = result.getResponseCode() >= 500;
+			return result;
+		} catch (IOException e) {
+			failedNodes.add(node);
+			throw e;
+		} finally {
+			completeRequest(node, startTime, failed);
+		}
+	}
+
+	private HttpPost createBulkPost(BulkRequest request, String node) {
+		HttpPost post = new HttpPost(node + "/_bulk");
+		// a spilled bulk may have been written with another content format
+		ContentType contentType = (request.getContentFormat() == bulk.getContentFormat()) ? bulkContentType : ContentType.create(request.getContentFormat().getMimeType());
+		// compressed responses are requested and decoded by the HTTP client of Jest, the asynchronous client does not request them
+		if (cfg.isRequestCompression()) {
+			BulkRequest.CompressedBody compressed = request.getCompressedBody(cfg.getCompressionLevel());
+			post.setEntity(new ByteArrayEntity(compressed.getBuffer(), 0, compressed.size(), contentType));
+			post.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			clientMetrics.addBytesSent(request.getSizeInBytes(), compressed.size());
+		} else {
+			post.setEntity(new ByteArrayEntity(request.getBuffer(), 0, request.getSizeInBytes(), contentType));
+			clientMetrics.addBytesSent(request.getSizeInBytes(), request.getSizeInBytes());
+		}
+		// the response is parsed as JSON, independent of the request content type
+		post.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+		if (useBasicAuth) {
+			post.setHeader(HttpHeaders.AUTHORIZATION, authHeader);
+		}
+		return post;
+	}
+
+	private BulkResult toBulkResult(HttpResult response) {
+		return bulkResultFactory.createNewElasticSearchResult(response.getBody(), response.getStatusCode(), response.getReasonPhrase(), gson);
+	}
+
+	/**
+	 * wait before the next attempt. The wait ends early, if the client is closed or the thread is interrupted
+	 * @param delay the time to wait in milliseconds
+	 * @return true if the full time was waited, false if the wait ended early
+	 */
+	private boolean backoff(long delay) {
+		long startTime = System.nanoTime();
+		boolean completed = false;
+		try {
+			completed = !closed.await(delay, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			logger.warn("Wait interrupted");
+			Thread.currentThread().interrupt();
+		}
+		clientMetrics.addBackoffTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+		return completed;
+	}
+
+	/**
+	 * the attempts to send one bulk, decides how to continue after a failed attempt
+	 */
+	private class Attempts
+	{
+		private final Set<String> failedNodes = new HashSet<String>();
+		private final long startTime = System.currentTimeMillis();
+		private int attempts = 0;
+		private int reconnects = 0;
+
+		/**
+		 * @return NEXT_NODE to send the request to the next node immediately, GIVE_UP if no further attempt is made, 
+		 * otherwise the time in milliseconds to wait before the next attempt
+		 */
+		long failed() {
+			attempts++;
+			clientMetrics.setIsConnected(false);
+			// if we have nodes left in the cluster, we try to immediately send the request to the next node,
+			// nodes that failed for this request and nodes with open circuit are skipped
+			if (nodeSelector.hasAvailableNode(nodes, failedNodes)) {
+				logger.error("Attempt: " + Integer.toString(attempts) + " failed, retrying without wait interval ...");
+				return NEXT_NODE;
+			}
+			// if all nodes failed, we try to reconnect with a wait interval 
+			failedNodes.clear();
+			reconnects++;
+			clientMetrics.incrementReconnectionCount();
+			long delay = backoffPolicy.getDelay(reconnects - 1);
+			if (reconnects > cfg.getReconnectionPolicyCount()) {
+				logger.error("Attempt: " + Integer.toString(attempts) + " failed, giving up");
+				return GIVE_UP;
+			}
+			if (backoffPolicy.isDeadlineExceeded(System.currentTimeMillis() - startTime, delay)) {
+				logger.error("Attempt: " + Integer.toString(attempts) + " failed, reconnection deadline reached, giving up");
+				return GIVE_UP;
+			}
+			logger.error("Attempt: " + Integer.toString(attempts) + " failed, retrying with wait of " + Long.toString(delay) + " ms, reconnect: " + Integer.toString(reconnects) + " ...");
+			return delay;
+		}
+
+		void succeeded() {
+			clientMetrics.setIsConnected(true);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Nodes failed: " + Integer.toString(Math.min(attempts, nodes.size())));
+			}
+		}
+
+		void stopped() {
+			logger.error("Attempt: " + Integer.toString(attempts) + " failed, reconnection stopped because the client is closed");
+		}
+	}
+
+	private void logSendError(IOException e) {
+		if (e instanceof NoHttpResponseException) {
+			logger.error("HTTP error. Cannot send request to server. Exception : " + e.getMessage());
+		} else if (e instanceof ConnectException || e instanceof ConnectTimeoutException) {
+			logger.error("Connect error. Cannot send request to server. Exception : " + e.getMessage());
+		} else {
+			logger.error("IO error. Cannot send request to server. Exception : " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	// Method to send the bulk request to ES, it handles connection retries and exceptions from the apache http client
+	private BulkResult executeRequest(BulkRequest request) {
+		Attempts attempts = new Attempts();
+		while (true) {
+			try {
+				BulkResult response = sendBulk(request, attempts.failedNodes);
+				attempts.succeeded();
+				return response;
+			} catch (IOException e) {
+				logSendError(e);
+			}
+			long delay = attempts.failed();
+			if (delay == GIVE_UP) {
+				return null;
+			}
+			if (delay != NEXT_NODE && !backoff(delay)) {
+				attempts.stopped();
+				return null;
+			}
 		}
-		return response;
 	}
 	
 	@Override
 	public void bulkIndexSend() {
 
-		if (null == bulkBuilder) {
+		if (bulk.isEmpty()) {
 			logger.debug("the bulk is empty, nothing to send");
 			return;
 		}
 		
-		if (useBasicAuth) {
-			bulkBuilder.setHeader(HttpHeaders.AUTHORIZATION, authHeader);
+		final long bulkId = nextBulkId.incrementAndGet();
+		// while bulks are waiting on disk, new bulks are queued behind them, so the documents are sent in order
+		if (null != spillQueue && spillQueue.getRecords() > 0 && spill(bulk, bulkId)) {
+			bulk.reset();
+			return;
+		}
+		if (null == freeBulks) {
+			processBulk(bulk, bulkId);
+			bulk.reset();
+			return;
 		}
 		
-		Bulk bulk = bulkBuilder.build();
-		BulkResult result = null;
+		// wait for a free buffer first, so the number of bulks in flight never exceeds the limit
+		BulkRequest next = null;
+		try {
+			next = freeBulks.take();
+		} catch (InterruptedException e) {
+			// no buffer is allocated outside the pool, the bulk is sent by the calling thread instead.
+			// The interrupt status is restored afterwards, the HTTP client would abort the request otherwise.
+			logger.warn("Waiting for a free bulk buffer interrupted, the bulk is sent synchronously");
+			processBulk(bulk, bulkId);
+			bulk.reset();
+			Thread.currentThread().interrupt();
+			return;
+		}
+		final BulkRequest request = bulk;
+		bulk = next;
+		
+		synchronized (pendingLock) {
+			pendingBulks++;
+		}
+		clientMetrics.incrementInFlightBulks();
+		if (null == sender) {
+			new AsyncBulk(request, bulkId).send();
+			if (cfg.getMaxInFlightBulks() == 0) {
+				waitForPendingBulks();
+			}
+			return;
+		}
+		sender.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					processBulk(request, bulkId);
+				} catch (Exception e) {
+					logger.error("Bulk send failed with exception: " + e.getMessage());
+					clientMetrics.incrementTotalFailedRequests();
+					clientMetrics.incrementIncompleteBulks();
+				} finally {
+					releaseBulk(request);
+				}
+			}
+		});
+	}
 
-		// execute the request
-		result = executeRequest(bulk);
+	@Override
+	public void bulkIndexSendParallel(int parallelism) {
+		int documents = bulk.getNumberOfDocuments();
+		int parts = Math.min(parallelism, documents);
+		// bulks waiting in the spill queue must be sent first, the new bulk is appended to them
+		if (parts <= 1 || (null != spillQueue && spillQueue.getRecords() > 0)) {
+			bulkIndexSend();
+			waitForPendingBulks();
+			return;
+		}
+		if (null == partSender) {
+			partSender = Executors.newFixedThreadPool(cfg.getMaxConnections(), threadFactory);
+		}
+		
+		// the items are copied, so the bulk can be filled again while the sub-bulks are in flight
+		List<Future<?>> results = new ArrayList<Future<?>>(parts);
+		for (int p = 0; p < parts; p++) {
+			int from = (int) ((long) documents * p / parts);
+			int to = (int) ((long) documents * (p + 1) / parts);
+			final BulkRequest part = new BulkRequest(bulk.getContentFormat(), bulk.getSizeInBytes() / parts + 1024);
+			for (int i = from; i < to; i++) {
+				part.addItem(bulk, i);
+			}
+			final long bulkId = nextBulkId.incrementAndGet();
+			clientMetrics.incrementInFlightBulks();
+			results.add(partSender.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						processBulk(part, bulkId);
+					} catch (Exception e) {
+						logger.error("Bulk send failed with exception: " + e.getMessage());
+						clientMetrics.incrementTotalFailedRequests();
+						clientMetrics.incrementIncompleteBulks();
+					} finally {
+						part.release();
+						clientMetrics.decrementInFlightBulks();
+					}
+				}
+			}));
+		}
+		bulk.reset();
+		
+		for (Future<?> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				logger.warn("Waiting for sub-bulks interrupted");
+				Thread.currentThread().interrupt();
+				// the sub-bulks still in flight are not known to be complete
+				clientMetrics.incrementIncompleteBulks();
+				return;
+			} catch (ExecutionException e) {
+				// exceptions are handled by the task
+			}
+		}
+		waitForPendingBulks();
+	}
+
+	// return the buffer of a bulk sent asynchronously to the free queue
+	private void releaseBulk(BulkRequest request) {
+		request.reset();
+		freeBulks.offer(request);
+		clientMetrics.decrementInFlightBulks();
+		synchronized (pendingLock) {
+			pendingBulks--;
+			pendingLock.notifyAll();
+		}
+	}
+
+	@Override
+	public void waitForPendingBulks() {
+		synchronized (pendingLock) {
+			while (pendingBulks > 0) {
+				try {
+					pendingLock.wait();
+				} catch (InterruptedException e) {
+					logger.warn("Waiting for pending bulks interrupted, bulks in flight = " + Integer.toString(pendingBulks));
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	// send a bulk and evaluate the response, called by the sender thread if bulks are sent asynchronously
+	private void processBulk(BulkRequest request, long bulkId) {
+		long startTime = System.nanoTime();
+		BulkResult result = executeRequest(request);
+		completeBulk(request, bulkId, result, System.nanoTime() - startTime);
+	}
+
+	// evaluate the first response of a bulk. Items rejected by the server are sent again in a follow-up bulk, until the retry budget is used up.
+	private void completeBulk(BulkRequest request, long bulkId, BulkResult result, long latency) {
+		BulkAcknowledgement acknowledgement = null;
+		if (null != acknowledgementListener) {
+			acknowledgement = new BulkAcknowledgement(bulkId, request.getNumberOfDocuments(), acknowledgeDocuments);
+		}
+		// the first item is the oldest one
+		long firstEnqueueTime = request.getEnqueueTime(0);
+		BulkRequest current = request;
+		int retries = 0;
+		while (true) {
+			// a bulk without response is kept on disk, if spilling is enabled
+			boolean spilled = (null == result) && spill(current, bulkId);
+			BulkRequest retry = evaluate(current, result, latency, retries < cfg.getMaxItemRetries(), acknowledgement, spilled);
+			if (null == retry) {
+				break;
+			}
+			long delay = itemRetryPolicy.getDelay(retries);
+			retries++;
+			clientMetrics.addRetriedItems(retry.getNumberOfDocuments());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Retry " + Integer.toString(retries) + " of " + Integer.toString(retry.getNumberOfDocuments()) + " rejected items in " + Long.toString(delay) + " ms");
+			}
+			if (!backoff(delay)) {
+				abandonRetry(retry, acknowledgement);
+				break;
+			}
+			// the bulks with the items to retry are only used once
+			if (current != request && current != retry) {
+				current.release();
+			}
+			current = retry;
+			long startTime = System.nanoTime();
+			result = executeRequest(current);
+			latency = System.nanoTime() - startTime;
+		}
+		if (current != request) {
+			current.release();
+		}
+		acknowledgeBulk(acknowledgement, firstEnqueueTime);
+	}
+
+	/**
+	 * write a bulk that could not be sent to the spill queue
+	 * @param request the bulk
+	 * @param bulkId the number of the bulk, used for the acknowledgement after the replay
+	 * @return true if the bulk was spilled, false if spilling is disabled or the bulk does not fit into the spill queue
+	 */
+	private boolean spill(BulkRequest request, long bulkId) {
+		if (null == spillQueue) {
+			return false;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(request.getSizeInBytes() + 64 * request.getNumberOfDocuments() + 64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeUTF(request.getContentFormat().name());
+			out.writeLong(bulkId);
+			request.writeTo(out);
+			out.flush();
+			if (spillQueue.append(bytes.toByteArray())) {
+				clientMetrics.incrementSpilledBulks();
+				updateSpillMetrics();
+				return true;
+			}
+			logger.error("Spill queue is full, bulk cannot be spilled. Bulk size = " + Integer.toString(request.getNumberOfDocuments()));
+		} catch (IOException e) {
+			logger.error("Bulk cannot be spilled, message: " + e.getMessage());
+		}
+		return false;
+	}
+
+	private void updateSpillMetrics() {
+		clientMetrics.setSpillQueueBulks(spillQueue.getRecords());
+		clientMetrics.setSpillQueueBytes(spillQueue.getRecordBytes());
+	}
+
+	/**
+	 * run by the replay thread: send the spilled bulks in order. A bulk is removed from the spill queue as soon as a node responded,
+	 * then the response is evaluated like the response of any other bulk. While no node responds, the replay waits and tries the same bulk again.
+	 */
+	private void replaySpilledBulks() {
+		BulkRequest request = null;
+		int replayAttempts = 0;
+		while (!isClosed()) {
+			byte[] record = null;
+			try {
+				record = spillQueue.peek(MIN_REPLAY_DELAY);
+			} catch (InterruptedException e) {
+				logger.warn("Replay of spilled bulks interrupted");
+				break;
+			}
+			if (null == record) {
+				continue;
+			}
+			long bulkId = 0;
+			try {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+				ContentFormat format = ContentFormat.fromName(in.readUTF());
+				if (null == format) {
+					throw new IOException("unknown content format");
+				}
+				bulkId = in.readLong();
+				if (null == request || request.getContentFormat() != format) {
+					if (null != request) {
+						request.release();
+					}
+					request = new BulkRequest(format);
+				}
+				request.readFrom(in);
+			} catch (IOException e) {
+				logger.error("Spilled bulk cannot be read and is dropped, message: " + e.getMessage());
+				spillQueue.remove();
+				updateSpillMetrics();
+				continue;
+			}
+			long startTime = System.nanoTime();
+			BulkResult result = executeRequest(request);
+			if (null == result) {
+				// still no node reachable, the bulk stays in the queue
+				long delay = Math.max(MIN_REPLAY_DELAY, backoffPolicy.getDelay(Math.min(replayAttempts++, 30)));
+				logger.warn("Replay of spilled bulk failed, next attempt in " + Long.toString(delay) + " ms, spilled bulks = " + Integer.toString(spillQueue.getRecords()));
+				if (!backoff(delay)) {
+					break;
+				}
+				continue;
+			}
+			replayAttempts = 0;
+			spillQueue.remove();
+			clientMetrics.incrementReplayedBulks();
+			updateSpillMetrics();
+			try {
+				completeBulk(request, bulkId, result, System.nanoTime() - startTime);
+			} catch (Exception e) {
+				logger.error("Replay of spilled bulk failed with exception: " + e.getMessage());
+				clientMetrics.incrementTotalFailedRequests();
+			}
+		}
+		if (null != request) {
+			request.release();
+		}
+	}
+
+	// the items to retry count as failed, because the client is closed
+	private void abandonRetry(BulkRequest retry, BulkAcknowledgement acknowledgement) {
+		logger.warn("Retry of rejected items stopped because the client is closed, failed items = " + Integer.toString(retry.getNumberOfDocuments()));
+		clientMetrics.addFailedItems(retry.getNumberOfDocuments());
+		clientMetrics.incrementIncompleteBulks();
+		reportFailedDocuments(retry, 0, "Retry of rejected document stopped because the client is closed");
+		if (null != acknowledgement) {
+			acknowledgement.addFailedDocuments(retry.getNumberOfDocuments());
+		}
+	}
+
+	// a bulk whose documents were all spilled is acknowledged after its replay
+	private void acknowledgeBulk(BulkAcknowledgement acknowledgement, long firstEnqueueTime) {
+		if (null != acknowledgement && acknowledgement.getIndexedDocuments() + acknowledgement.getFailedDocuments() > 0) {
+			acknowledgement.setLatencyNanos(System.nanoTime() - firstEnqueueTime);
+			acknowledgementListener.bulkAcknowledged(acknowledgement);
+		}
+	}
+
+	// items failing with these status codes or error types may succeed if they are sent again later
+	private static boolean isRetriable(int status, String errorType) {
+		return status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE || REJECTED_EXECUTION.equals(errorType);
+	}
+
+	// record an item acknowledged by the server
+	private static void acknowledge(BulkAcknowledgement acknowledgement, BulkRequest request, int i, BulkResultItem item, long now) {
+		long version = (item.version != null) ? item.version.longValue() : 0;
+		acknowledgement.addIndexedDocument(item.index, item.id, version, item.status, now - request.getEnqueueTime(i));
+	}
+
+	// pass a failed item to the listener
+	private void reportFailedDocument(BulkRequest request, int item, int status, String reason) {
+		if (null != failedDocumentListener) {
+			failedDocumentListener.documentFailed(new FailedDocument(request.getIndex(item), request.getType(item), request.getId(item), request.getDocument(item), status, reason));
+		}
+	}
+
+	// pass all items of the bulk to the listener
+	private void reportFailedDocuments(BulkRequest request, int status, String reason) {
+		if (null != failedDocumentListener) {
+			for (int i = 0; i < request.getNumberOfDocuments(); i++) {
+				reportFailedDocument(request, i, status, reason);
+			}
+		}
+	}
+
+	/**
+	 * evaluate the response of a bulk
+	 * @param request the bulk
+	 * @param result the response, or null if no response was received
+	 * @param latency the time in nanoseconds from the first attempt until the response
+	 * @param retryAllowed true if rejected items may be retried, otherwise they count as failed
+	 * @param acknowledgement collects the acknowledged documents, or null if nobody is interested
+	 * @param spilled true if the bulk was written to the spill queue because no response was received
+	 * @return a bulk containing the items to retry, or null if there is nothing to retry
+	 */
+	private BulkRequest evaluate(BulkRequest request, BulkResult result, long latency, boolean retryAllowed, BulkAcknowledgement acknowledgement, boolean spilled) {
+		int bulkSize = request.getNumberOfDocuments();
 
 		// evaluate the result of the bulk index operation 
+		BulkRequest retry = null;
 		int failedInserts = 0;
+		int rejectedInserts = 0;
+		int permanentFailures = 0;
+		// failures that could be resolved by sending the documents again
+		boolean incomplete = false;
 		if (null == result) {
-			logger.error("Bulk send failed, response object is null. Bulk size = " + Integer.toString(bulkSize));
 			clientMetrics.incrementTotalFailedRequests();
+			if (spilled) {
+				logger.warn("Bulk send failed, response object is null. Bulk spilled to disk, size = " + Integer.toString(bulkSize));
+			} else {
+				logger.error("Bulk send failed, response object is null. Bulk size = " + Integer.toString(bulkSize));
+				permanentFailures = bulkSize;
+				incomplete = true;
+				reportFailedDocuments(request, 0, "No response received from any node");
+			}
 		} else {
 			if (result.isSucceeded()) {
 				clientMetrics.incrementNumInserts();
 				if (logger.isDebugEnabled()) {
 					logger.debug("Bulk send successfully, size = " + Integer.toString(bulkSize));
 				}
+				if (null != acknowledgement) {
+					// the items are only parsed if the document details are needed
+					List<BulkResultItem> items = acknowledgement.hasDocuments() ? result.getItems() : null;
+					if (null != items && items.size() == bulkSize) {
+						long now = System.nanoTime();
+						for (int i = 0; i < bulkSize; i++) {
+							acknowledge(acknowledgement, request, i, items.get(i), now);
+						}
+					} else {
+						acknowledgement.addIndexedDocuments(bulkSize);
+					}
+				}
 			} else {
 				if (result.getErrorMessage() != null) {
-					logger.error("Bulk send failed. bulk size = " + Integer.toString(bulkSize));
-					logger.error("Error: " + result.getErrorMessage());
-				    if (null != result.getItems()) {
-						for (BulkResultItem item : result.getItems()) {
+					List<BulkResultItem> items = result.getItems();
+				    if (null != items && items.size() == bulkSize) {
+				    	// the response items are in the order of the request items
+				    	long now = System.nanoTime();
+				    	for (int i = 0; i < bulkSize; i++) {
+				    		BulkResultItem item = items.get(i);
+				    		if (item.error == null && null != acknowledgement) {
+				    			if (acknowledgement.hasDocuments()) {
+				    				acknowledge(acknowledgement, request, i, item, now);
+				    			} else {
+				    				acknowledgement.addIndexedDocuments(1);
+				    			}
+				    		}
 							if (item.error != null) {
 								failedInserts++;
-								logger.error("Bulk item indexing failed. " + item.error);
+								if (item.status == TOO_MANY_REQUESTS || REJECTED_EXECUTION.equals(item.errorType)) {
+									rejectedInserts++;
+								}
+								if (retryAllowed && isRetriable(item.status, item.errorType)) {
+									if (null == retry) {
+										// usually few items are rejected, the buffer grows if needed
+										retry = new BulkRequest(request.getContentFormat());
+									}
+									retry.addItem(request, i);
+								} else {
+									permanentFailures++;
+									// a retriable item failed because the retries are used up
+									incomplete |= isRetriable(item.status, item.errorType);
+									logger.error("Bulk item indexing failed. " + item.error);
+									reportFailedDocument(request, i, item.status, (item.errorReason != null) ? item.errorReason : item.error);
+								}
 							}
 						}
-						logger.error("Total items = " + Integer.toString(bulkSize) + ", failed = " + Integer.toString(failedInserts));
+				    	if (failedInserts > 0) {
+				    		logger.error("Bulk send failed. Total items = " + Integer.toString(bulkSize) + ", failed = " + Integer.toString(failedInserts) 
+				    				+ ", to retry = " + Integer.toString(failedInserts - permanentFailures));
+				    	}
+				    } else {
+				    	// the whole request failed
+				    	failedInserts = bulkSize;
+				    	if (result.getResponseCode() == TOO_MANY_REQUESTS) {
+				    		rejectedInserts = bulkSize;
+				    	}
+				    	if (retryAllowed && isRetriable(result.getResponseCode(), null)) {
+				    		retry = request;
+				    	} else {
+				    		permanentFailures = bulkSize;
+				    		incomplete = true;
+				    		logger.error("Bulk send failed. bulk size = " + Integer.toString(bulkSize));
+				    		logger.error("Error: " + result.getErrorMessage());
+				    		reportFailedDocuments(request, result.getResponseCode(), result.getErrorMessage());
+				    	}
 				    }
 				}
 			}
 		}
+		clientMetrics.addFailedItems(permanentFailures);
+		if (incomplete) {
+			clientMetrics.incrementIncompleteBulks();
+		}
+		if (null != acknowledgement) {
+			acknowledgement.addFailedDocuments(permanentFailures);
+		}
 
-		bulkBuilder = null;
-		bulkSize = 0;
-		
+		if (null != bulkListener) {
+			bulkListener.bulkCompleted(new BulkStatistics(bulkSize, request.getSizeInBytes(), latency, rejectedInserts, failedInserts, null == result));
+		}
+		return retry;
 	}
 
+
+	/**
+	 * an action that runs once, either after a delay on the scheduler, or when the client is closed
+	 */
+	private class DelayedAction implements Runnable
+	{
+		private final Runnable action;
+		private final long startTime = System.nanoTime();
+		private final AtomicBoolean started = new AtomicBoolean(false);
+
+		DelayedAction(Runnable action) {
+			this.action = action;
+		}
+
+		@Override
+		public void run() {
+			if (started.compareAndSet(false, true)) {
+				delayedActions.remove(this);
+				clientMetrics.addBackoffTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+				action.run();
+			}
+		}
+	}
+
+	/**
+	 * the asynchronous counterpart of backoff(), the action runs after the delay without blocking a thread.
+	 * If the client is closed, the action runs immediately, it must check isClosed() to decide how to continue
+	 */
+	private void runDelayed(Runnable action, long delay) {
+		DelayedAction delayed = new DelayedAction(action);
+		delayedActions.add(delayed);
+		if (isClosed()) {
+			delayed.run();
+			return;
+		}
+		try {
+			delayScheduler.schedule(delayed, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// the scheduler has been shut down by close()
+			delayed.run();
+		}
+	}
+
+	private boolean isClosed() {
+		return closed.getCount() == 0;
+	}
+
+	/**
+	 * a bulk sent with the asynchronous HTTP client. The steps of processBulk() and executeRequest() run in the callbacks
+	 * of the requests and in delayed actions, so no thread waits for a response or a retry
+	 */
+	private class AsyncBulk
+	{
+		private final BulkRequest request;
+		private final long bulkId;
+		private final BulkAcknowledgement acknowledgement;
+		private final long firstEnqueueTime;
+		private final AtomicBoolean completed = new AtomicBoolean(false);
+		// the bulk currently sent, the request or a bulk with the items to retry
+		private BulkRequest current;
+		private int itemRetries = 0;
+		// the attempts to send the current bulk
+		private Attempts attempts = null;
+		private long sendStartTime = 0;
+
+		AsyncBulk(BulkRequest request, long bulkId) {
+			this.request = request;
+			this.bulkId = bulkId;
+			this.current = request;
+			this.firstEnqueueTime = request.getEnqueueTime(0);
+			this.acknowledgement = (null != acknowledgementListener) ? new BulkAcknowledgement(bulkId, request.getNumberOfDocuments(), acknowledgeDocuments) : null;
+		}
+
+		// send the current bulk, the first attempt
+		void send() {
+			attempts = new Attempts();
+			sendStartTime = System.nanoTime();
+			attempt();
+		}
+
+		private void attempt() {
+			try {
+				final String node = beginRequest(attempts.failedNodes);
+				final long startTime = System.nanoTime();
+				transport.execute(createBulkPost(current, node), new HttpTransport.Callback() {
+					@Override
+					public void completed(HttpResult response) {
+						try {
+							BulkResult result = toBulkResult(response);
+							completeRequest(node, startTime, result.getResponseCode() >= 500);
+							attempts.succeeded();
+							evaluateResult(result);
+						} catch (RuntimeException e) {
+							abort(e);
+						}
+					}
+
+					@Override
+					public void failed(IOException e) {
+						try {
+							completeRequest(node, startTime, true);
+							attempts.failedNodes.add(node);
+							logSendError(e);
+							attemptFailed();
+						} catch (RuntimeException re) {
+							abort(re);
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				abort(e);
+			}
+		}
+
+		private void attemptFailed() {
+			long delay = attempts.failed();
+			if (delay == GIVE_UP) {
+				evaluateResult(null);
+			} else if (delay == NEXT_NODE) {
+				attempt();
+			} else {
+				runDelayed(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (isClosed()) {
+								attempts.stopped();
+								evaluateResult(null);
+							} else {
+								attempt();
+							}
+						} catch (RuntimeException e) {
+							abort(e);
+						}
+					}
+				}, delay);
+			}
+		}
+
+		private void evaluateResult(BulkResult result) {
+			// spilling writes to disk in the callback, this only happens while no node can be reached
+			boolean spilled = (null == result) && spill(current, bulkId);
+			final BulkRequest retry = evaluate(current, result, System.nanoTime() - sendStartTime, itemRetries < cfg.getMaxItemRetries(), acknowledgement, spilled);
+			if (null == retry) {
+				complete();
+				return;
+			}
+			long delay = itemRetryPolicy.getDelay(itemRetries);
+			itemRetries++;
+			clientMetrics.addRetriedItems(retry.getNumberOfDocuments());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Retry " + Integer.toString(itemRetries) + " of " + Integer.toString(retry.getNumberOfDocuments()) + " rejected items in " + Long.toString(delay) + " ms");
+			}
+			runDelayed(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (isClosed()) {
+							abandonRetry(retry, acknowledgement);
+							complete();
+						} else {
+							// the bulks with the items to retry are only used once
+							if (current != request && current != retry) {
+								current.release();
+							}
+							current = retry;
+							send();
+						}
+					} catch (RuntimeException e) {
+						abort(e);
+					}
+				}
+			}, delay);
+		}
+
+		private void abort(RuntimeException e) {
+			logger.error("Bulk send failed with exception: " + e.getMessage());
+			clientMetrics.incrementTotalFailedRequests();
+			if (completed.compareAndSet(false, true)) {
+				releaseRetry();
+				releaseBulk(request);
+			}
+		}
+
+		private void complete() {
+			if (completed.compareAndSet(false, true)) {
+				try {
+					acknowledgeBulk(acknowledgement, firstEnqueueTime);
+				} finally {
+					releaseRetry();
+					releaseBulk(request);
+				}
+			}
+		}
+
+		private void releaseRetry() {
+			if (current != request) {
+				current.release();
+			}
+		}
+	}
 	
 	public void reset() {
-		bulkBuilder = null;
-		bulkSize = 0;
+		bulk.reset();
 	}	
 
 }
@@ -0,0 +1,98 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Discovers the HTTP addresses of the cluster nodes with the nodes info API.
+ * The node filter selects the nodes on the server side, for example 'data:true,ingest:true' for all data and ingest nodes.
+ * The publish address of a node is either 'ip:port' or 'hostname/ip:port', in the second case the host name is used,
+ * so the address matches the server certificate if SSL is enabled.
+ */
+class NodeDiscovery
+{
+	private final HttpTransport transport;
+	private final String scheme;
+	private final String path;
+	private final String authHeader;
+
+	/**
+	 * @param transport the transport used to send the request
+	 * @param sslEnabled true if the discovered nodes are accessed with HTTPS
+	 * @param filter the node filter, or null for all nodes
+	 * @param authHeader the basic authentication header, or null
+	 */
+	NodeDiscovery(HttpTransport transport, boolean sslEnabled, String filter, String authHeader) {
+		this.transport = transport;
+		this.scheme = sslEnabled ? "https://" : "http://";
+		this.path = (filter != null && !filter.isEmpty()) ? "/_nodes/" + filter + "/http" : "/_nodes/http";
+		this.authHeader = authHeader;
+	}
+
+	/**
+	 * request the nodes from one node of the cluster
+	 * @param node the URL of the node to ask
+	 * @return the URLs of the discovered nodes, sorted
+	 * @throws IOException if the request fails or the response cannot be parsed
+	 */
+	List<String> discover(String node) throws IOException {
+		HttpGet get = new HttpGet(node + path);
+		get.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+		if (authHeader != null) {
+			get.setHeader(HttpHeaders.AUTHORIZATION, authHeader);
+		}
+		HttpResult response = transport.execute(get);
+		int status = response.getStatusCode();
+		if (status != 200 || response.getBody() == null) {
+			throw new IOException("Node discovery failed with status " + status + " " + response.getReasonPhrase());
+		}
+		return parseNodes(response.getBody());
+	}
+
+	List<String> parseNodes(String body) throws IOException {
+		List<String> result = new ArrayList<String>();
+		try {
+			JsonObject nodes = new JsonParser().parse(body).getAsJsonObject().getAsJsonObject("nodes");
+			if (nodes == null) {
+				throw new IOException("Node discovery response contains no nodes");
+			}
+			for (Map.Entry<String, JsonElement> node : nodes.entrySet()) {
+				JsonObject http = node.getValue().getAsJsonObject().getAsJsonObject("http");
+				// nodes with disabled HTTP have no http section
+				if (http == null || !http.has("publish_address")) {
+					continue;
+				}
+				result.add(scheme + toHostAndPort(http.get("publish_address").getAsString()));
+			}
+		} catch (IllegalStateException | ClassCastException | JsonParseException e) {
+			throw new IOException("Node discovery response cannot be parsed: " + e.getMessage());
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	// 'hostname/ip:port' -> 'hostname:port', 'ip:port' stays as it is
+	static String toHostAndPort(String publishAddress) {
+		int slash = publishAddress.indexOf('/');
+		if (slash < 0) {
+			return publishAddress;
+		}
+		int colon = publishAddress.lastIndexOf(':');
+		if (slash == 0) {
+			return publishAddress.substring(1);
+		}
+		return publishAddress.substring(0, slash) + publishAddress.substring(colon);
+	}
+}
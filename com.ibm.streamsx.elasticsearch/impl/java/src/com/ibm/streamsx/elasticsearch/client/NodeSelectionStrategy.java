@@ -0,0 +1,40 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+/**
+ * The strategies to choose the node for the next request
+ */
+public enum NodeSelectionStrategy
+{
+	// the nodes are used one after the other
+	ROUND_ROBIN("roundRobin"),
+	// the node with the fewest requests in flight is used
+	LEAST_IN_FLIGHT("leastInFlight"),
+	// the faster of two randomly chosen nodes is used, based on the average latency and the requests in flight
+	LATENCY("latency");
+
+	private final String parameterValue;
+
+	private NodeSelectionStrategy(String parameterValue) {
+		this.parameterValue = parameterValue;
+	}
+
+	/**
+	 * @return the name used in operator parameters
+	 */
+	public String getParameterValue() {
+		return parameterValue;
+	}
+
+	/**
+	 * @param name the name of the strategy as used in operator parameters, case is ignored
+	 * @return the strategy, or null if the name is unknown
+	 */
+	public static NodeSelectionStrategy fromName(String name) {
+		for (NodeSelectionStrategy strategy : values()) {
+			if (strategy.parameterValue.equalsIgnoreCase(name)) {
+				return strategy;
+			}
+		}
+		return null;
+	}
+}
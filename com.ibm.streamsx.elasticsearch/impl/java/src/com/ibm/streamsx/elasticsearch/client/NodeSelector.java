@@ -0,0 +1,243 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the node for the next request and keeps statistics per node.
+ *
+ * With the latency strategy, two nodes are chosen at random and the node with the lower cost is used.
+ * The cost is the average latency multiplied by the number of requests in flight plus one, so a slow node
+ * and a node with a queue of requests are both avoided. The average latency is an exponentially weighted
+ * moving average (EWMA). A failed request counts with a penalty latency. The average decays while a node is
+ * not used, so a node that was slow is tried again after some time. Nodes without latency samples have no cost
+ * and are tried first.
+ *
+ * Nodes with an open circuit and nodes that reached the maximum number of requests in flight are skipped by all strategies,
+ * unless no other node is left.
+ */
+class NodeSelector
+{
+	// weight of the last request in the latency average
+	private static final double ALPHA = 0.3;
+	// the average latency decays to 1/e in this time if the node is not used
+	private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+	// latency counted for a request that failed
+	private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * statistics of one node, updated by the threads sending requests
+	 */
+	static class NodeState
+	{
+		private final CircuitBreaker circuitBreaker;
+		private final AtomicInteger inFlight = new AtomicInteger(0);
+		private final AtomicLong requests = new AtomicLong(0);
+		private final AtomicLong failedRequests = new AtomicLong(0);
+		private double averageLatencyNanos = 0;
+		private long lastUpdateNanos = 0;
+
+		NodeState(int failureThreshold) {
+			circuitBreaker = new CircuitBreaker(failureThreshold);
+		}
+
+		CircuitBreaker getCircuitBreaker() {
+			return circuitBreaker;
+		}
+
+		int getInFlight() {
+			return inFlight.get();
+		}
+
+		long getRequests() {
+			return requests.get();
+		}
+
+		long getFailedRequests() {
+			return failedRequests.get();
+		}
+
+		synchronized double getAverageLatencyNanos() {
+			return averageLatencyNanos;
+		}
+
+		// the average latency, reduced by the time the node was not used
+		synchronized double getDecayedLatencyNanos(long now) {
+			if (requests.get() == 0) {
+				return 0;
+			}
+			return averageLatencyNanos * Math.exp(-(double) Math.max(0, now - lastUpdateNanos) / DECAY_NANOS);
+		}
+
+		synchronized void addSample(long latencyNanos, long now) {
+			if (requests.get() == 0) {
+				averageLatencyNanos = latencyNanos;
+			} else {
+				averageLatencyNanos = ALPHA * latencyNanos + (1 - ALPHA) * getDecayedLatencyNanos(now);
+			}
+			lastUpdateNanos = now;
+		}
+	}
+
+	private final NodeSelectionStrategy strategy;
+	private final int maxInFlightPerNode;
+	private final int failureThreshold;
+	private final AtomicInteger nextNode = new AtomicInteger(0);
+	private final ConcurrentHashMap<String, NodeState> states = new ConcurrentHashMap<String, NodeState>();
+
+	/**
+	 * @param strategy the selection strategy
+	 * @param maxInFlightPerNode the number of requests in flight after which a node is skipped, 0 for no limit
+	 * @param failureThreshold the number of consecutive failed requests that open the circuit of a node, 0 to never open it
+	 */
+	NodeSelector(NodeSelectionStrategy strategy, int maxInFlightPerNode, int failureThreshold) {
+		this.strategy = strategy;
+		this.maxInFlightPerNode = maxInFlightPerNode;
+		this.failureThreshold = failureThreshold;
+	}
+
+	NodeState getState(String node) {
+		NodeState state = states.get(node);
+		if (state == null) {
+			state = new NodeState(failureThreshold);
+			NodeState existing = states.putIfAbsent(node, state);
+			if (existing != null) {
+				state = existing;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * choose the node for the next request
+	 * @param nodes the current nodes
+	 * @param excluded nodes that already failed for this request, ignored if all nodes are excluded
+	 * @return the node
+	 */
+	String select(List<String> nodes, Collection<String> excluded) {
+		String node;
+		// a half open node allows only one trial request, select again if another request took it meanwhile
+		do {
+			node = select(nodes, excluded, true, true);
+			if (node == null) {
+				node = select(nodes, excluded, true, false);
+			}
+		} while (node != null && !getState(node).circuitBreaker.tryAcquire());
+		if (node == null) {
+			node = select(nodes, excluded, false, false);
+		}
+		if (node == null) {
+			node = select(nodes, null, false, false);
+		}
+		return node;
+	}
+
+	/**
+	 * @param nodes the current nodes
+	 * @param excluded nodes that already failed for this request
+	 * @return true if a node is left that is not excluded and has no open circuit
+	 */
+	boolean hasAvailableNode(List<String> nodes, Collection<String> excluded) {
+		for (String node : nodes) {
+			if (isAvailable(node, excluded, true, false)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isAvailable(String node, Collection<String> excluded, boolean checkCircuit, boolean checkLimit) {
+		if (excluded != null && excluded.contains(node)) {
+			return false;
+		}
+		NodeState state = getState(node);
+		if (checkCircuit && !state.circuitBreaker.isRequestAllowed()) {
+			return false;
+		}
+		return !checkLimit || maxInFlightPerNode <= 0 || state.getInFlight() < maxInFlightPerNode;
+	}
+
+	private String select(List<String> nodes, Collection<String> excluded, boolean checkCircuit, boolean checkLimit) {
+		int numberOfNodes = nodes.size();
+		int start = (nextNode.getAndIncrement() & Integer.MAX_VALUE) % numberOfNodes;
+		switch (strategy) {
+		case LEAST_IN_FLIGHT: {
+			// ties are broken in round robin order
+			String best = null;
+			int bestInFlight = Integer.MAX_VALUE;
+			for (int i = 0; i < numberOfNodes; i++) {
+				String node = nodes.get((start + i) % numberOfNodes);
+				if (isAvailable(node, excluded, checkCircuit, checkLimit)) {
+					int inFlight = getState(node).getInFlight();
+					if (inFlight < bestInFlight) {
+						best = node;
+						bestInFlight = inFlight;
+					}
+				}
+			}
+			return best;
+		}
+		case LATENCY: {
+			// two random choices among the available nodes
+			List<String> candidates = new ArrayList<String>(numberOfNodes);
+			for (String node : nodes) {
+				if (isAvailable(node, excluded, checkCircuit, checkLimit)) {
+					candidates.add(node);
+				}
+			}
+			int available = candidates.size();
+			if (available == 0) {
+				return null;
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(available);
+			int second = (available > 1) ? (first + 1 + random.nextInt(available - 1)) % available : first;
+			String a = candidates.get(first);
+			String b = candidates.get(second);
+			long now = System.nanoTime();
+			return (getCost(b, now) < getCost(a, now)) ? b : a;
+		}
+		default:
+			for (int i = 0; i < numberOfNodes; i++) {
+				String node = nodes.get((start + i) % numberOfNodes);
+				if (isAvailable(node, excluded, checkCircuit, checkLimit)) {
+					return node;
+				}
+			}
+			return null;
+		}
+	}
+
+	private double getCost(String node, long now) {
+		NodeState state = getState(node);
+		return state.getDecayedLatencyNanos(now) * (state.getInFlight() + 1);
+	}
+
+	void requestStarted(String node) {
+		getState(node).inFlight.incrementAndGet();
+	}
+
+	/**
+	 * @param node the node the request was sent to
+	 * @param latencyNanos the time until the response was received, or until the request failed
+	 * @param failed true if no response was received, or the node responded with a server error
+	 * @return true if the state of the circuit changed
+	 */
+	boolean requestCompleted(String node, long latencyNanos, boolean failed) {
+		NodeState state = getState(node);
+		state.inFlight.decrementAndGet();
+		state.addSample(failed ? Math.max(latencyNanos, FAILURE_PENALTY_NANOS) : latencyNanos, System.nanoTime());
+		state.requests.incrementAndGet();
+		if (failed) {
+			state.failedRequests.incrementAndGet();
+			return state.circuitBreaker.recordFailure();
+		}
+		return state.circuitBreaker.recordSuccess();
+	}
+}
@@ -0,0 +1,302 @@
+package com.ibm.streamsx.elasticsearch.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent FIFO queue of records, stored in append-only segment files that are memory mapped.
+ *
+ * A segment starts with a header holding a magic number and the offset of the first unread record.
+ * Each record is stored as length, CRC32 checksum and payload. The payload and the checksum are written before the length,
+ * so a record that was not written completely has the length 0 and ends the segment, a record with a wrong checksum too.
+ * Appended records are forced to disk. The read offset is updated in the mapped header when a record is removed,
+ * so after a restart the queue continues with the first unread record. Segments are deleted when all records are read.
+ *
+ * The size of all segment files is limited, a record that does not fit is rejected.
+ */
+class SpillQueue
+{
+	private static final int MAGIC = 0x45535350;
+	private static final int HEADER_SIZE = 8;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final String PREFIX = "spill-";
+	private static final String SUFFIX = ".seg";
+
+	/**
+	 * a segment file, records are read from readOffset and appended at writeOffset
+	 */
+	private static class Segment
+	{
+		private final File file;
+		private final MappedByteBuffer buffer;
+		private int readOffset;
+		private int writeOffset;
+
+		Segment(File file, MappedByteBuffer buffer) {
+			this.file = file;
+			this.buffer = buffer;
+		}
+
+		int capacity() {
+			return buffer.capacity();
+		}
+
+		boolean hasUnread() {
+			return readOffset < writeOffset;
+		}
+	}
+
+	private final File directory;
+	private final long maxSize;
+	private final int segmentSize;
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	private long nextSequence = 0;
+	// the size of all segment files
+	private long fileSize = 0;
+	// the unread records and their payload size
+	private int records = 0;
+	private long recordBytes = 0;
+	private boolean closed = false;
+
+	/**
+	 * open the queue, records left in the directory by a previous run are read again
+	 * @param directory the directory of the segment files, created if it does not exist
+	 * @param maxSize the maximum size of all segment files in bytes
+	 * @throws IOException if the directory or a segment cannot be accessed
+	 */
+	SpillQueue(File directory, long maxSize) throws IOException {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.segmentSize = (int) Math.min(DEFAULT_SEGMENT_SIZE, maxSize);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create spill directory " + directory);
+		}
+		recover();
+	}
+
+	private static String getFileName(long sequence) {
+		return String.format("%s%016d%s", PREFIX, sequence, SUFFIX);
+	}
+
+	private static MappedByteBuffer map(File file, int size) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			channel.close();
+		}
+	}
+
+	// read the segments of a previous run, oldest first
+	private void recover() throws IOException {
+		File[] files = directory.listFiles();
+		List<Long> sequences = new ArrayList<Long>();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+					try {
+						sequences.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+					} catch (NumberFormatException e) {
+						// not a segment file
+					}
+				}
+			}
+		}
+		Collections.sort(sequences);
+		for (long sequence : sequences) {
+			File file = new File(directory, getFileName(sequence));
+			nextSequence = sequence + 1;
+			if (file.length() < HEADER_SIZE || file.length() > Integer.MAX_VALUE) {
+				file.delete();
+				continue;
+			}
+			Segment segment = new Segment(file, map(file, (int) file.length()));
+			if (segment.buffer.getInt(0) != MAGIC) {
+				file.delete();
+				continue;
+			}
+			segment.readOffset = Math.max(HEADER_SIZE, segment.buffer.getInt(4));
+			// scan the records to find the end of the segment
+			int offset = HEADER_SIZE;
+			int unread = 0;
+			long unreadBytes = 0;
+			while (true) {
+				int length = readRecordLength(segment, offset);
+				if (length <= 0) {
+					break;
+				}
+				if (offset >= segment.readOffset) {
+					unread++;
+					unreadBytes += length;
+				}
+				offset += RECORD_HEADER_SIZE + length;
+			}
+			segment.writeOffset = offset;
+			if (!segment.hasUnread()) {
+				file.delete();
+				continue;
+			}
+			segments.add(segment);
+			fileSize += segment.capacity();
+			records += unread;
+			recordBytes += unreadBytes;
+		}
+	}
+
+	/**
+	 * @return the length of the valid record at the offset, or 0 if there is no valid record
+	 */
+	private static int readRecordLength(Segment segment, int offset) {
+		MappedByteBuffer buffer = segment.buffer;
+		if (offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+			return 0;
+		}
+		int length = buffer.getInt(offset);
+		if (length <= 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+			return 0;
+		}
+		byte[] payload = new byte[length];
+		readBytes(buffer, offset + RECORD_HEADER_SIZE, payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, length);
+		return ((int) crc.getValue() == buffer.getInt(offset + 4)) ? length : 0;
+	}
+
+	// bulk transfer with a duplicate, so the position of the shared buffer is not changed
+	private static void readBytes(MappedByteBuffer buffer, int offset, byte[] target) {
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(offset);
+		dup.get(target);
+	}
+
+	private Segment createSegment(int size) throws IOException {
+		long sequence = nextSequence++;
+		File file = new File(directory, getFileName(sequence));
+		Segment segment = new Segment(file, map(file, size));
+		segment.buffer.putInt(0, MAGIC);
+		segment.buffer.putInt(4, HEADER_SIZE);
+		segment.readOffset = HEADER_SIZE;
+		segment.writeOffset = HEADER_SIZE;
+		segments.add(segment);
+		fileSize += size;
+		return segment;
+	}
+
+	/**
+	 * append a record to the queue
+	 * @param payload the record
+	 * @return false if the record does not fit into the size limit of the queue
+	 * @throws IOException if a segment cannot be created
+	 */
+	synchronized boolean append(byte[] payload) throws IOException {
+		if (closed) {
+			return false;
+		}
+		int needed = RECORD_HEADER_SIZE + payload.length;
+		Segment segment = segments.isEmpty() ? null : segments.getLast();
+		if (segment == null || segment.writeOffset + needed > segment.capacity()) {
+			// records larger than a segment get an own segment
+			int size = Math.max(segmentSize, HEADER_SIZE + needed);
+			if (fileSize + size > maxSize) {
+				return false;
+			}
+			segment = createSegment(size);
+		}
+		MappedByteBuffer buffer = segment.buffer;
+		int offset = segment.writeOffset;
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(offset + RECORD_HEADER_SIZE);
+		dup.put(payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		buffer.putInt(offset + 4, (int) crc.getValue());
+		buffer.putInt(offset, payload.length);
+		buffer.force();
+		segment.writeOffset = offset + needed;
+		records++;
+		recordBytes += payload.length;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * get the oldest record without removing it, wait if the queue is empty
+	 * @param timeout the maximum time to wait in milliseconds
+	 * @return the oldest record, or null if the queue is still empty after the timeout or closed
+	 */
+	synchronized byte[] peek(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (records == 0 && !closed) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return null;
+			}
+			wait(remaining);
+		}
+		if (closed) {
+			return null;
+		}
+		Segment segment = segments.getFirst();
+		int length = segment.buffer.getInt(segment.readOffset);
+		byte[] payload = new byte[length];
+		readBytes(segment.buffer, segment.readOffset + RECORD_HEADER_SIZE, payload);
+		return payload;
+	}
+
+	/**
+	 * remove the oldest record, the segment is deleted if all its records are read
+	 */
+	synchronized void remove() {
+		if (records == 0) {
+			return;
+		}
+		Segment segment = segments.getFirst();
+		int length = segment.buffer.getInt(segment.readOffset);
+		segment.readOffset += RECORD_HEADER_SIZE + length;
+		segment.buffer.putInt(4, segment.readOffset);
+		records--;
+		recordBytes -= length;
+		if (!segment.hasUnread()) {
+			segments.removeFirst();
+			fileSize -= segment.capacity();
+			segment.file.delete();
+		}
+	}
+
+	/**
+	 * @return the number of records in the queue
+	 */
+	synchronized int getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return the size of the records in the queue in bytes
+	 */
+	synchronized long getRecordBytes() {
+		return recordBytes;
+	}
+
+	/**
+	 * write the read offsets to disk and wake up waiting threads, the records are kept for the next run
+	 */
+	synchronized void close() {
+		closed = true;
+		for (Segment segment : segments) {
+			segment.buffer.force();
+		}
+		notifyAll();
+	}
+}
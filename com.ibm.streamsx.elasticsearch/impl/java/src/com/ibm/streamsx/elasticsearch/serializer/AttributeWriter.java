@@ -0,0 +1,25 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import com.ibm.streams.operator.Tuple;
+
+/**
+ * A writer for a single tuple attribute. Instances are created once per attribute
+ * when the serialization plan is built, and know the attribute index, the
+ * pre-encoded field name and the attribute type.
+ */
+interface AttributeWriter
+{
+	/**
+	 * append the field name and the attribute value of the tuple to the document
+	 * @param tuple the tuple to read the attribute value from
+	 * @param out the writer for the document
+	 */
+	void write(Tuple tuple, DocumentWriter out);
+}
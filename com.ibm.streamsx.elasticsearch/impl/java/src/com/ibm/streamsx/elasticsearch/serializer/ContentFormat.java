@@ -0,0 +1,65 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+/**
+ * The content formats for documents and bulk requests
+ */
+public enum ContentFormat
+{
+	JSON("application/json", (byte) '\n'),
+	SMILE("application/smile", (byte) 0xFF);
+
+	private final String mimeType;
+	private final byte separator;
+
+	private ContentFormat(String mimeType, byte separator) {
+		this.mimeType = mimeType;
+		this.separator = separator;
+	}
+
+	/**
+	 * @return the content type of requests with documents in this format
+	 */
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/**
+	 * @return the byte that terminates each action and document in a bulk request
+	 */
+	public byte getSeparator() {
+		return separator;
+	}
+
+	/**
+	 * @param initialCapacity the initial size of the buffer
+	 * @return a new writer for documents in this format
+	 */
+	public DocumentWriter createWriter(int initialCapacity) {
+		switch (this) {
+		case SMILE:
+			return new SmileWriter(initialCapacity);
+		default:
+			return new JsonWriter(initialCapacity);
+		}
+	}
+
+	/**
+	 * @param name the name of the format, case is ignored
+	 * @return the format, or null if the name is unknown
+	 */
+	public static ContentFormat fromName(String name) {
+		for (ContentFormat format : values()) {
+			if (format.name().equalsIgnoreCase(name)) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,94 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lightweight structural check of JSON documents that are passed through without parsing.
+ * The document must be one object with balanced brackets and terminated strings, and must not contain
+ * line breaks or control characters, because they would break the bulk request. Tokens, numbers and
+ * escape sequences are not validated, Elasticsearch rejects such documents with a mapping error.
+ * The check is a single scan over the bytes. An instance reuses its bracket stack and is not thread safe.
+ */
+public class DocumentValidator
+{
+	private byte[] stack = new byte[32];
+
+	/**
+	 * check the bytes between position and limit of the buffer, the position is not changed
+	 * @param document the UTF-8 encoded document
+	 * @return null if the document is valid, otherwise a description of the error
+	 */
+	public String validate(ByteBuffer document) {
+		int end = document.limit();
+		int i = skipWhitespace(document, document.position(), end);
+		if (i == end || document.get(i) != '{') {
+			return "Document is not a JSON object";
+		}
+		int depth = 0;
+		boolean inString = false;
+		for (; i < end; i++) {
+			byte b = document.get(i);
+			if (inString) {
+				if (b == '"') {
+					inString = false;
+				} else if (b == '\\') {
+					i++;
+					if (i < end && (document.get(i) & 0xFF) < 0x20) {
+						return "Document contains a control character";
+					}
+				} else if ((b & 0xFF) < 0x20) {
+					return "Document contains a control character in a string";
+				}
+				continue;
+			}
+			switch (b) {
+			case '"':
+				inString = true;
+				break;
+			case '{':
+			case '[':
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth << 1);
+				}
+				// the closing bracket is the opening bracket + 2 in ASCII
+				stack[depth++] = (byte) (b + 2);
+				break;
+			case '}':
+			case ']':
+				if (depth == 0 || stack[--depth] != b) {
+					return "Document has unbalanced brackets";
+				}
+				if (depth == 0) {
+					return (skipWhitespace(document, i + 1, end) == end) ? null : "Document has data after the end of the object";
+				}
+				break;
+			case '\n':
+			case '\r':
+				return "Document contains a line break";
+			default:
+				// space and tab are the only whitespace allowed between tokens
+				if ((b & 0xFF) < 0x20 && b != '\t') {
+					return "Document contains a control character";
+				}
+				break;
+			}
+		}
+		return inString ? "Document has an unterminated string" : "Document has unbalanced brackets";
+	}
+
+	// line breaks are not skipped, because they end the document in the bulk request
+	private static int skipWhitespace(ByteBuffer document, int i, int end) {
+		while (i < end && (document.get(i) == ' ' || document.get(i) == '\t')) {
+			i++;
+		}
+		return i;
+	}
+}
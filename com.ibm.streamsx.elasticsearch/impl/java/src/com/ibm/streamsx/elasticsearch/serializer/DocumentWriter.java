@@ -0,0 +1,119 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Writer for documents in one of the content formats accepted by Elasticsearch. 
+ * Implementations encode values directly into a reusable, growable byte buffer. They do not validate 
+ * the structure of the document, callers are responsible for writing separators, field names and 
+ * brackets in the right order. Separators are only written by formats that need them.
+ */
+public interface DocumentWriter
+{
+	/**
+	 * discard the current content, the allocated buffer is kept for the next document
+	 */
+	void reset();
+
+	/**
+	 * @return the number of valid bytes in the buffer
+	 */
+	int size();
+
+	/**
+	 * @return the internal buffer, only the first size() bytes are valid. The buffer
+	 * is reused and overwritten by the next document.
+	 */
+	byte[] getBuffer();
+
+	/**
+	 * append pre-encoded bytes, for example a field name returned by encodeName()
+	 */
+	void writeRaw(byte[] bytes);
+
+	void writeRaw(byte[] bytes, int offset, int length);
+
+	/**
+	 * append the bytes between position and limit of the buffer, the position is not changed
+	 */
+	void writeRaw(ByteBuffer bytes);
+
+	/**
+	 * encode a field name once, to be written with writeFieldName()
+	 * @param name the field name
+	 * @return the encoded name in the format of this writer
+	 */
+	byte[] encodeName(String name);
+
+	// structure
+
+	/**
+	 * write the header that starts each top level document, if the format has one
+	 */
+	void writeHeader();
+
+	void writeStartObject();
+
+	void writeEndObject();
+
+	void writeStartArray();
+
+	void writeEndArray();
+
+	/**
+	 * write the separator between two fields of an object or two elements of an array, if the format has one
+	 */
+	void writeSeparator();
+
+	/**
+	 * write a field name returned by encodeName()
+	 */
+	void writeFieldName(byte[] encodedName);
+
+	// values
+
+	void writeNull();
+
+	void writeBoolean(boolean value);
+
+	void writeInt(int value);
+
+	void writeLong(long value);
+
+	/**
+	 * write a long value that represents an unsigned 64 bit integer
+	 */
+	void writeUnsignedLong(long value);
+
+	void writeFloat(float value);
+
+	void writeDouble(double value);
+
+	/**
+	 * write a decimal value, as exact as the format allows
+	 */
+	void writeDecimal(BigDecimal value);
+
+	void writeString(String value);
+
+	/**
+	 * write a string value given as UTF-8 bytes between position and limit of the buffer, without decoding them.
+	 * The position is not changed.
+	 * @return false if the bytes are not valid UTF-8, then nothing is written and the caller has to write the decoded string
+	 */
+	boolean writeUtf8String(ByteBuffer value);
+
+	/**
+	 * write a string value of ASCII characters that need no escaping
+	 * @return the position of the first character in the buffer, so the caller can replace characters in place
+	 */
+	int writeAsciiString(byte[] value);
+}
@@ -0,0 +1,458 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming JSON writer that encodes values directly into a reusable, growable UTF-8 byte buffer.
+ * After the buffer has grown to the size of the largest document, writing documents does not
+ * allocate any objects. The writer does not validate the structure of the document, callers
+ * are responsible for writing separators and brackets in the right order.
+ */
+public class JsonWriter implements DocumentWriter
+{
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+	// powers of ten that are exactly representable as double
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17
+	};
+	// integers above this value are not exactly representable as double
+	private static final double MAX_EXACT_INTEGER = 9007199254740992.0;
+
+	private byte[] buf;
+	private int count = 0;
+
+	// scratch space for formatting numbers, filled from the end
+	private final byte[] digits = new byte[24];
+
+	public JsonWriter() {
+		this(1024);
+	}
+
+	public JsonWriter(int initialCapacity) {
+		buf = new byte[initialCapacity];
+	}
+
+	// buffer handling ---------------------------------------------------------------------------
+
+	/**
+	 * discard the current content, the allocated buffer is kept for the next document
+	 */
+	@Override
+	public void reset() {
+		count = 0;
+	}
+
+	/**
+	 * @return the number of valid bytes in the buffer
+	 */
+	@Override
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the internal buffer, only the first size() bytes are valid. The buffer
+	 * is reused and overwritten by the next document.
+	 */
+	@Override
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	private void ensureCapacity(int additional) {
+		int required = count + additional;
+		if (required > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(required, buf.length << 1));
+		}
+	}
+
+	// structure -----------------------------------------------------------------------------------
+
+	public void writeByte(char c) {
+		ensureCapacity(1);
+		buf[count++] = (byte) c;
+	}
+
+	@Override
+	public void writeHeader() {
+		// JSON documents have no header
+	}
+
+	@Override
+	public void writeStartObject() {
+		writeByte('{');
+	}
+
+	@Override
+	public void writeEndObject() {
+		writeByte('}');
+	}
+
+	@Override
+	public void writeStartArray() {
+		writeByte('[');
+	}
+
+	@Override
+	public void writeEndArray() {
+		writeByte(']');
+	}
+
+	@Override
+	public void writeSeparator() {
+		writeByte(',');
+	}
+
+	@Override
+	public void writeFieldName(byte[] encodedName) {
+		writeRaw(encodedName);
+	}
+
+	@Override
+	public byte[] encodeName(String name) {
+		return encodeFieldName(name);
+	}
+
+	/**
+	 * append pre-encoded bytes, for example a field name returned by encodeFieldName()
+	 */
+	@Override
+	public void writeRaw(byte[] bytes) {
+		writeRaw(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void writeRaw(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buf, count, length);
+		count += length;
+	}
+
+	@Override
+	public void writeRaw(ByteBuffer bytes) {
+		int length = bytes.remaining();
+		ensureCapacity(length);
+		bytes.duplicate().get(buf, count, length);
+		count += length;
+	}
+
+	/**
+	 * encode a field name once, including quotes and the name separator
+	 * @param name the field name
+	 * @return the encoded bytes, to be used with writeRaw()
+	 */
+	public static byte[] encodeFieldName(String name) {
+		JsonWriter w = new JsonWriter(name.length() + 8);
+		w.writeString(name);
+		w.writeByte(':');
+		return Arrays.copyOf(w.buf, w.count);
+	}
+
+	// values --------------------------------------------------------------------------------------
+
+	@Override
+	public void writeNull() {
+		writeRaw(NULL);
+	}
+
+	@Override
+	public void writeBoolean(boolean value) {
+		writeRaw(value ? TRUE : FALSE);
+	}
+
+	@Override
+	public void writeInt(int value) {
+		writeLong(value);
+	}
+
+	@Override
+	public void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			writeRaw(MIN_LONG);
+			return;
+		}
+		boolean negative = value < 0;
+		int pos = formatDigits(negative ? -value : value);
+		if (negative) {
+			digits[--pos] = '-';
+		}
+		writeRaw(digits, pos, digits.length - pos);
+	}
+
+	/**
+	 * write a long value that represents an unsigned 64 bit integer
+	 */
+	@Override
+	public void writeUnsignedLong(long value) {
+		if (value >= 0) {
+			writeLong(value);
+			return;
+		}
+		// split into the value divided by ten and the last digit
+		long quotient = (value >>> 1) / 5;
+		long remainder = value - quotient * 10;
+		int pos = formatDigits(quotient);
+		writeRaw(digits, pos, digits.length - pos);
+		writeByte((char) ('0' + remainder));
+	}
+
+	// format a non-negative value into the scratch buffer, returns the start position
+	private int formatDigits(long value) {
+		int pos = digits.length;
+		do {
+			long q = value / 10;
+			digits[--pos] = (byte) ('0' + (value - q * 10));
+			value = q;
+		} while (value != 0);
+		return pos;
+	}
+
+	/**
+	 * write a double value. NaN and infinite values cannot be represented in JSON and are written as null.
+	 * Values between 0.001 and 10^7 are formatted without allocation, using the shortest decimal
+	 * representation with up to 17 digits that converts back to the same double.
+	 * Other values are formatted by Double.toString().
+	 */
+	@Override
+	public void writeDouble(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			writeNull();
+			return;
+		}
+		double abs = Math.abs(value);
+		if (abs >= 1e-3 && abs < 1e7) {
+			for (int scale = 0; scale < POW10.length; scale++) {
+				double scaled = abs * POW10[scale];
+				if (scaled >= MAX_EXACT_INTEGER) {
+					break;
+				}
+				long mantissa = (long) Math.rint(scaled);
+				// the division is exactly rounded, so this is the value parsed back from the decimal string
+				if (mantissa / POW10[scale] == abs) {
+					writeDecimal(value < 0, mantissa, scale);
+					return;
+				}
+			}
+		}
+		writeAscii(Double.toString(value));
+	}
+
+	/**
+	 * write a decimal value with all its digits. The exponent notation of BigDecimal.toString() is valid JSON.
+	 */
+	@Override
+	public void writeDecimal(BigDecimal value) {
+		String text = value.toString();
+		int length = text.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			buf[count++] = (byte) text.charAt(i);
+		}
+	}
+
+	/**
+	 * write a float value, like writeDouble(). The shortest decimal representation that
+	 * converts back to the same float is used, so 0.1f is written as 0.1.
+	 */
+	@Override
+	public void writeFloat(float value) {
+		if (Float.isNaN(value) || Float.isInfinite(value)) {
+			writeNull();
+			return;
+		}
+		float abs = Math.abs(value);
+		if (abs >= 1e-3f && abs < 1e7f) {
+			// up to 8 fractional digits the double rounding of the check below cannot hit a float tie
+			for (int scale = 0; scale <= 8; scale++) {
+				long mantissa = (long) Math.rint(abs * POW10[scale]);
+				if ((float) (mantissa / POW10[scale]) == abs) {
+					writeDecimal(value < 0, mantissa, scale);
+					return;
+				}
+			}
+		}
+		writeAscii(Float.toString(value));
+	}
+
+	// write mantissa * 10^-scale, always with at least one fractional digit
+	private void writeDecimal(boolean negative, long mantissa, int scale) {
+		int pos = formatDigits(mantissa);
+		int length = digits.length - pos;
+		ensureCapacity(length + scale + 3);
+		if (negative) {
+			buf[count++] = '-';
+		}
+		if (scale == 0) {
+			System.arraycopy(digits, pos, buf, count, length);
+			count += length;
+			buf[count++] = '.';
+			buf[count++] = '0';
+		} else if (length > scale) {
+			int integral = length - scale;
+			System.arraycopy(digits, pos, buf, count, integral);
+			count += integral;
+			buf[count++] = '.';
+			System.arraycopy(digits, pos + integral, buf, count, scale);
+			count += scale;
+		} else {
+			buf[count++] = '0';
+			buf[count++] = '.';
+			for (int i = length; i < scale; i++) {
+				buf[count++] = '0';
+			}
+			System.arraycopy(digits, pos, buf, count, length);
+			count += length;
+		}
+	}
+
+	private void writeAscii(String s) {
+		int length = s.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			buf[count++] = (byte) s.charAt(i);
+		}
+	}
+
+	/**
+	 * write a string value, including quotes. The string is escaped according to the JSON
+	 * specification and encoded as UTF-8. Unpaired surrogates are replaced by '?'.
+	 */
+	@Override
+	public void writeString(String value) {
+		int length = value.length();
+		// worst case is 6 bytes per char for escaped control characters
+		ensureCapacity(length * 6 + 2);
+		byte[] b = buf;
+		int c = count;
+		b[c++] = '"';
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			if (ch < 0x80) {
+				if (ch >= 0x20 && ch != '"' && ch != '\\') {
+					b[c++] = (byte) ch;
+				} else {
+					c = writeEscaped(b, c, ch);
+				}
+			} else if (ch < 0x800) {
+				b[c++] = (byte) (0xC0 | (ch >> 6));
+				b[c++] = (byte) (0x80 | (ch & 0x3F));
+			} else if (Character.isSurrogate(ch)) {
+				if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					int cp = Character.toCodePoint(ch, value.charAt(++i));
+					b[c++] = (byte) (0xF0 | (cp >> 18));
+					b[c++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+					b[c++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+					b[c++] = (byte) (0x80 | (cp & 0x3F));
+				} else {
+					b[c++] = '?';
+				}
+			} else {
+				b[c++] = (byte) (0xE0 | (ch >> 12));
+				b[c++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				b[c++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+		b[c++] = '"';
+		count = c;
+	}
+
+	/**
+	 * copy ASCII bytes that need no escaping, returns the position of the first character
+	 */
+	@Override
+	public int writeAsciiString(byte[] value) {
+		ensureCapacity(value.length + 2);
+		buf[count++] = '"';
+		int start = count;
+		System.arraycopy(value, 0, buf, start, value.length);
+		count += value.length;
+		buf[count++] = '"';
+		return start;
+	}
+
+	/**
+	 * write a string value given as UTF-8 bytes, for example the bytes of an rstring. The bytes are copied
+	 * without decoding, only quotes, backslashes and control characters are escaped. The bytes are validated
+	 * in the same scan, nothing is written if they are not valid UTF-8.
+	 */
+	@Override
+	public boolean writeUtf8String(ByteBuffer value) {
+		int length = value.remaining();
+		ensureCapacity(length * 6 + 2);
+		byte[] b = buf;
+		int c = count;
+		b[c++] = '"';
+		// most strings need no escaping, so the bytes are copied at once and only checked
+		int start = c;
+		int end = start + length;
+		value.duplicate().get(b, start, length);
+		int escape = end;
+		for (int k = start; k < end; k++) {
+			byte ch = b[k];
+			if (ch < 0) {
+				int sequence = Utf8.sequenceLength(b, k, end);
+				if (sequence == 0) {
+					return false;
+				}
+				k += sequence - 1;
+			} else if (escape == end && !isPlain(ch)) {
+				escape = k;
+			}
+		}
+		int i = escape - start;
+		c = escape;
+		// escape the rest, reading from the source because the copy is overwritten
+		int offset = value.position();
+		for (; i < length; i++) {
+			byte ch = value.get(offset + i);
+			if (isPlain(ch)) {
+				b[c++] = ch;
+			} else {
+				c = writeEscaped(b, c, ch);
+			}
+		}
+		b[c++] = '"';
+		count = c;
+		return true;
+	}
+
+	// bytes of multi-byte UTF-8 sequences are negative and copied as they are
+	private static boolean isPlain(byte ch) {
+		return (ch < 0 || ch >= 0x20) && ch != '"' && ch != '\\';
+	}
+
+	// write the escape sequence of a quote, a backslash or a control character, returns the new position
+	private static int writeEscaped(byte[] b, int c, int ch) {
+		b[c++] = '\\';
+		switch (ch) {
+		case '"':  b[c++] = '"'; break;
+		case '\\': b[c++] = '\\'; break;
+		case '\n': b[c++] = 'n'; break;
+		case '\r': b[c++] = 'r'; break;
+		case '\t': b[c++] = 't'; break;
+		case '\b': b[c++] = 'b'; break;
+		case '\f': b[c++] = 'f'; break;
+		default:
+			b[c++] = 'u';
+			b[c++] = '0';
+			b[c++] = '0';
+			b[c++] = HEX[ch >> 4];
+			b[c++] = HEX[ch & 0xF];
+		}
+		return c;
+	}
+}
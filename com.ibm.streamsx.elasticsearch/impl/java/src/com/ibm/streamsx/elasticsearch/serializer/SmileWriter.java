@@ -0,0 +1,376 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming writer for the binary SMILE format, the binary JSON variant supported by Elasticsearch.
+ * Numbers are written in their binary representation, strings as raw UTF-8 bytes with a length or
+ * end marker, so neither number formatting nor escaping is needed. The writer does not use shared
+ * name or value references, each document is self-contained.
+ */
+public class SmileWriter implements DocumentWriter
+{
+	// header with version 0, no shared names, no shared values, no raw binary
+	private static final byte[] HEADER = { ':', ')', '\n', 0 };
+
+	private static final byte TOKEN_EMPTY_STRING = 0x20;
+	private static final byte TOKEN_NULL = 0x21;
+	private static final byte TOKEN_FALSE = 0x22;
+	private static final byte TOKEN_TRUE = 0x23;
+	private static final byte TOKEN_INT32 = 0x24;
+	private static final byte TOKEN_INT64 = 0x25;
+	private static final byte TOKEN_FLOAT32 = 0x28;
+	private static final byte TOKEN_FLOAT64 = 0x29;
+	private static final int PREFIX_TINY_ASCII = 0x40;
+	private static final int PREFIX_SHORT_ASCII = 0x60;
+	private static final int PREFIX_TINY_UNICODE = 0x80;
+	private static final int PREFIX_SHORT_UNICODE = 0xA0;
+	private static final int PREFIX_SMALL_INT = 0xC0;
+	private static final byte TOKEN_LONG_ASCII = (byte) 0xE0;
+	private static final byte TOKEN_LONG_UNICODE = (byte) 0xE4;
+	private static final byte TOKEN_START_ARRAY = (byte) 0xF8;
+	private static final byte TOKEN_END_ARRAY = (byte) 0xF9;
+	private static final byte TOKEN_START_OBJECT = (byte) 0xFA;
+	private static final byte TOKEN_END_OBJECT = (byte) 0xFB;
+	private static final byte END_OF_STRING = (byte) 0xFC;
+
+	// field name tokens
+	private static final byte NAME_EMPTY = 0x20;
+	private static final byte NAME_LONG_UNICODE = 0x34;
+	private static final int PREFIX_NAME_SHORT_ASCII = 0x80;
+	private static final int PREFIX_NAME_SHORT_UNICODE = 0xC0;
+	private static final int MAX_SHORT_NAME_ASCII = 64;
+	private static final int MAX_SHORT_NAME_UNICODE = 56;
+
+	private byte[] buf;
+	private int count = 0;
+
+	public SmileWriter() {
+		this(1024);
+	}
+
+	public SmileWriter(int initialCapacity) {
+		buf = new byte[initialCapacity];
+	}
+
+	// buffer handling ---------------------------------------------------------------------------
+
+	@Override
+	public void reset() {
+		count = 0;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	private void ensureCapacity(int additional) {
+		int required = count + additional;
+		if (required > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(required, buf.length << 1));
+		}
+	}
+
+	private void writeToken(byte token) {
+		ensureCapacity(1);
+		buf[count++] = token;
+	}
+
+	@Override
+	public void writeRaw(byte[] bytes) {
+		writeRaw(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void writeRaw(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buf, count, length);
+		count += length;
+	}
+
+	@Override
+	public void writeRaw(ByteBuffer bytes) {
+		int length = bytes.remaining();
+		ensureCapacity(length);
+		bytes.duplicate().get(buf, count, length);
+		count += length;
+	}
+
+	@Override
+	public byte[] encodeName(String name) {
+		if (name.isEmpty()) {
+			return new byte[] { NAME_EMPTY };
+		}
+		SmileWriter w = new SmileWriter(name.length() * 3 + 2);
+		w.count = 1;
+		int length = w.writeUtf8(name);
+		boolean ascii = (length == name.length());
+		if (ascii && length <= MAX_SHORT_NAME_ASCII) {
+			w.buf[0] = (byte) (PREFIX_NAME_SHORT_ASCII + length - 1);
+		} else if (!ascii && length <= MAX_SHORT_NAME_UNICODE) {
+			w.buf[0] = (byte) (PREFIX_NAME_SHORT_UNICODE + length - 2);
+		} else {
+			w.buf[0] = NAME_LONG_UNICODE;
+			w.writeToken(END_OF_STRING);
+		}
+		return Arrays.copyOf(w.buf, w.count);
+	}
+
+	// structure -----------------------------------------------------------------------------------
+
+	@Override
+	public void writeHeader() {
+		writeRaw(HEADER);
+	}
+
+	@Override
+	public void writeStartObject() {
+		writeToken(TOKEN_START_OBJECT);
+	}
+
+	@Override
+	public void writeEndObject() {
+		writeToken(TOKEN_END_OBJECT);
+	}
+
+	@Override
+	public void writeStartArray() {
+		writeToken(TOKEN_START_ARRAY);
+	}
+
+	@Override
+	public void writeEndArray() {
+		writeToken(TOKEN_END_ARRAY);
+	}
+
+	@Override
+	public void writeSeparator() {
+		// values are self-delimiting
+	}
+
+	@Override
+	public void writeFieldName(byte[] encodedName) {
+		writeRaw(encodedName);
+	}
+
+	// values --------------------------------------------------------------------------------------
+
+	@Override
+	public void writeNull() {
+		writeToken(TOKEN_NULL);
+	}
+
+	@Override
+	public void writeBoolean(boolean value) {
+		writeToken(value ? TOKEN_TRUE : TOKEN_FALSE);
+	}
+
+	@Override
+	public void writeInt(int value) {
+		int zigzag = (value << 1) ^ (value >> 31);
+		if (zigzag >= 0 && zigzag <= 0x1F) {
+			writeToken((byte) (PREFIX_SMALL_INT + zigzag));
+			return;
+		}
+		writeToken(TOKEN_INT32);
+		writeVInt(zigzag & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public void writeLong(long value) {
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			writeInt((int) value);
+			return;
+		}
+		writeToken(TOKEN_INT64);
+		writeVInt((value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * values above Long.MAX_VALUE cannot be stored in a long field of Elasticsearch,
+	 * they are written as double, which is also what Elasticsearch does with them in JSON documents
+	 */
+	@Override
+	public void writeUnsignedLong(long value) {
+		if (value >= 0) {
+			writeLong(value);
+		} else {
+			// keep the lowest bit as sticky bit, so the conversion rounds correctly
+			writeDouble((double) ((value >>> 1) | (value & 1)) * 2.0);
+		}
+	}
+
+	// unsigned variable length integer: 7 bits per byte with the most significant group first,
+	// the last byte has the high bit set and holds the 6 least significant bits
+	private void writeVInt(long value) {
+		ensureCapacity(10);
+		int groups = 0;
+		for (long v = value >>> 6; v != 0; v >>>= 7) {
+			groups++;
+		}
+		for (int i = groups - 1; i >= 0; i--) {
+			buf[count++] = (byte) ((value >>> (6 + 7 * i)) & 0x7F);
+		}
+		buf[count++] = (byte) (0x80 | (value & 0x3F));
+	}
+
+	// floating point values are written as their raw bits, in 7 bit groups with the most significant group first
+	@Override
+	public void writeFloat(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		ensureCapacity(6);
+		buf[count++] = TOKEN_FLOAT32;
+		for (int i = 4; i >= 0; i--) {
+			buf[count++] = (byte) ((bits >>> (7 * i)) & 0x7F);
+		}
+	}
+
+	@Override
+	public void writeDouble(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		ensureCapacity(11);
+		buf[count++] = TOKEN_FLOAT64;
+		for (int i = 9; i >= 0; i--) {
+			buf[count++] = (byte) ((bits >>> (7 * i)) & 0x7F);
+		}
+	}
+
+	/**
+	 * decimal values are written as double, Elasticsearch stores them as double or scaled_float anyway
+	 */
+	@Override
+	public void writeDecimal(BigDecimal value) {
+		writeDouble(value.doubleValue());
+	}
+
+	/**
+	 * write a string value. The token depends on the length and on the characters, so the string is
+	 * encoded first and the token is filled in afterwards. Unpaired surrogates are replaced by '?'.
+	 */
+	@Override
+	public void writeString(String value) {
+		if (value.isEmpty()) {
+			writeToken(TOKEN_EMPTY_STRING);
+			return;
+		}
+		int tokenPos = count;
+		ensureCapacity(1);
+		count++;
+		int length = writeUtf8(value);
+		writeStringToken(tokenPos, length, length == value.length());
+	}
+
+	/**
+	 * write a string value given as UTF-8 bytes, for example the bytes of an rstring. The bytes are copied
+	 * without decoding. They are validated while looking for characters that are not ASCII, nothing is written
+	 * if they are not valid UTF-8.
+	 */
+	@Override
+	public boolean writeUtf8String(ByteBuffer value) {
+		int length = value.remaining();
+		if (length == 0) {
+			writeToken(TOKEN_EMPTY_STRING);
+			return true;
+		}
+		ensureCapacity(length + 2);
+		int start = count + 1;
+		int end = start + length;
+		value.duplicate().get(buf, start, length);
+		boolean ascii = true;
+		for (int i = start; i < end; i++) {
+			if (buf[i] < 0) {
+				int sequence = Utf8.sequenceLength(buf, i, end);
+				if (sequence == 0) {
+					return false;
+				}
+				ascii = false;
+				i += sequence - 1;
+			}
+		}
+		int tokenPos = count;
+		count = end;
+		writeStringToken(tokenPos, length, ascii);
+		return true;
+	}
+
+	@Override
+	public int writeAsciiString(byte[] value) {
+		int length = value.length;
+		if (length == 0) {
+			writeToken(TOKEN_EMPTY_STRING);
+			return count;
+		}
+		ensureCapacity(length + 2);
+		int tokenPos = count++;
+		int start = count;
+		System.arraycopy(value, 0, buf, start, length);
+		count += length;
+		writeStringToken(tokenPos, length, true);
+		return start;
+	}
+
+	// fill in the token of a string written after tokenPos, long strings get the end marker
+	private void writeStringToken(int tokenPos, int length, boolean ascii) {
+		if (ascii && length <= 32) {
+			buf[tokenPos] = (byte) (PREFIX_TINY_ASCII + length - 1);
+		} else if (ascii && length <= 64) {
+			buf[tokenPos] = (byte) (PREFIX_SHORT_ASCII + length - 33);
+		} else if (!ascii && length >= 2 && length <= 33) {
+			buf[tokenPos] = (byte) (PREFIX_TINY_UNICODE + length - 2);
+		} else if (!ascii && length >= 34 && length <= 65) {
+			buf[tokenPos] = (byte) (PREFIX_SHORT_UNICODE + length - 34);
+		} else {
+			buf[tokenPos] = ascii ? TOKEN_LONG_ASCII : TOKEN_LONG_UNICODE;
+			writeToken(END_OF_STRING);
+		}
+	}
+
+	// append the UTF-8 bytes of the string, returns the number of bytes
+	private int writeUtf8(String value) {
+		int length = value.length();
+		ensureCapacity(length * 3);
+		byte[] b = buf;
+		int start = count;
+		int c = count;
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			if (ch < 0x80) {
+				b[c++] = (byte) ch;
+			} else if (ch < 0x800) {
+				b[c++] = (byte) (0xC0 | (ch >> 6));
+				b[c++] = (byte) (0x80 | (ch & 0x3F));
+			} else if (Character.isSurrogate(ch)) {
+				if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					int cp = Character.toCodePoint(ch, value.charAt(++i));
+					b[c++] = (byte) (0xF0 | (cp >> 18));
+					b[c++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+					b[c++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+					b[c++] = (byte) (0x80 | (cp & 0x3F));
+				} else {
+					b[c++] = '?';
+				}
+			} else {
+				b[c++] = (byte) (0xE0 | (ch >> 12));
+				b[c++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				b[c++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+		count = c;
+		return c - start;
+	}
+}
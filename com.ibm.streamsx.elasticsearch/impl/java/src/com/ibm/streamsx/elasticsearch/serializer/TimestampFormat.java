@@ -0,0 +1,45 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+/**
+ * The formats of the timestamp added to the documents, named like the Elasticsearch date formats
+ */
+public enum TimestampFormat
+{
+	// yyyy-MM-dd'T'HH:mm:ss.SSSZ in the default time zone
+	DATE_TIME("date_time"),
+	// milliseconds since the epoch as number
+	EPOCH_MILLIS("epoch_millis");
+
+	private final String parameterValue;
+
+	private TimestampFormat(String parameterValue) {
+		this.parameterValue = parameterValue;
+	}
+
+	/**
+	 * @return the value of the operator parameter
+	 */
+	public String getParameterValue() {
+		return parameterValue;
+	}
+
+	/**
+	 * @param name the value of the operator parameter, case is ignored
+	 * @return the format, or null if the name is unknown
+	 */
+	public static TimestampFormat fromName(String name) {
+		for (TimestampFormat format : values()) {
+			if (format.parameterValue.equalsIgnoreCase(name)) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
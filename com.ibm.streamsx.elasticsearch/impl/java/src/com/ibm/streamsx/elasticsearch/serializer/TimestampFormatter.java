@@ -0,0 +1,137 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Formats timestamps like SimpleDateFormat with the pattern yyyy-MM-dd'T'HH:mm:ss.SSSZZ in the default time zone,
+ * without creating a formatter, a date and a calendar for each timestamp.
+ * The text up to the minute and the zone offset are cached for the minute of the last timestamp. The cached text is
+ * written into the document and only the seconds and milliseconds are replaced in place, as long as the timestamps stay
+ * in the same minute. The cached minute is an immutable object in a volatile field, so one formatter can be used by several threads.
+ * Timestamps before 1900 or after 9999 are formatted with SimpleDateFormat, because it uses the Julian calendar
+ * for old dates and writes more than four year digits.
+ */
+class TimestampFormatter
+{
+	private static final String PATTERN = "yyyy'-'MM'-'dd'T'HH':'mm':'ss.SSSZZ";
+	// 1900-01-01T00:00:00Z and 9999-12-30T00:00:00Z, so the local year has four digits in all time zones
+	private static final long MIN_CACHED = -2208988800000L;
+	private static final long MAX_CACHED = 253402128000000L;
+	private static final long MINUTE = 60000L;
+	// position of the seconds in the text
+	private static final int SECONDS_OFFSET = 17;
+
+	/**
+	 * the text of one minute, the seconds and milliseconds are placeholders
+	 */
+	private static final class Minute
+	{
+		private final long start;
+		private final long end;
+		private final byte[] text;
+
+		Minute(long start, long end, byte[] text) {
+			this.start = start;
+			this.end = end;
+			this.text = text;
+		}
+	}
+
+	private final TimeZone timeZone;
+	private final ZoneRules rules;
+	private volatile Minute minute = null;
+
+	TimestampFormatter() {
+		timeZone = TimeZone.getDefault();
+		rules = timeZone.toZoneId().getRules();
+	}
+
+	/**
+	 * write the formatted timestamp as string value
+	 * @param millis the milliseconds since the epoch
+	 * @param out the writer of the document
+	 */
+	void write(long millis, DocumentWriter out) {
+		Minute m = minute;
+		if (m == null || millis < m.start || millis >= m.end) {
+			m = (millis >= MIN_CACHED && millis < MAX_CACHED) ? createMinute(millis) : null;
+			if (m == null) {
+				SimpleDateFormat df = new SimpleDateFormat(PATTERN);
+				df.setTimeZone(timeZone);
+				out.writeString(df.format(new Date(millis)));
+				return;
+			}
+			minute = m;
+		}
+		int position = out.writeAsciiString(m.text) + SECONDS_OFFSET;
+		byte[] text = out.getBuffer();
+		int ms = (int) Math.floorMod(millis, MINUTE);
+		int seconds = ms / 1000;
+		ms = ms % 1000;
+		text[position] = (byte) ('0' + seconds / 10);
+		text[position + 1] = (byte) ('0' + seconds % 10);
+		text[position + 3] = (byte) ('0' + ms / 100);
+		text[position + 4] = (byte) ('0' + ms / 10 % 10);
+		text[position + 5] = (byte) ('0' + ms % 10);
+	}
+
+	/**
+	 * @return the minute containing the timestamp, limited to the time with the same zone offset,
+	 * or null if the zone offset is not a multiple of a minute
+	 */
+	private Minute createMinute(long millis) {
+		Instant instant = Instant.ofEpochMilli(millis);
+		ZoneOffset offset = rules.getOffset(instant);
+		int offsetSeconds = offset.getTotalSeconds();
+		if (offsetSeconds % 60 != 0) {
+			return null;
+		}
+		long start = Math.floorDiv(millis, MINUTE) * MINUTE;
+		if (!rules.getOffset(Instant.ofEpochMilli(start)).equals(offset)) {
+			start = millis;
+		}
+		long end = Math.floorDiv(millis, MINUTE) * MINUTE + MINUTE;
+		ZoneOffsetTransition transition = rules.nextTransition(instant);
+		if (transition != null) {
+			end = Math.min(end, transition.toEpochSecond() * 1000);
+		}
+
+		LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), 0, offset);
+		byte[] text = "0000-00-00T00:00:00.000+0000".getBytes(StandardCharsets.US_ASCII);
+		writeDigits(text, 0, time.getYear(), 4);
+		writeDigits(text, 5, time.getMonthValue(), 2);
+		writeDigits(text, 8, time.getDayOfMonth(), 2);
+		writeDigits(text, 11, time.getHour(), 2);
+		writeDigits(text, 14, time.getMinute(), 2);
+		int offsetMinutes = offsetSeconds / 60;
+		if (offsetMinutes < 0) {
+			text[23] = '-';
+			offsetMinutes = -offsetMinutes;
+		}
+		writeDigits(text, 24, offsetMinutes / 60, 2);
+		writeDigits(text, 26, offsetMinutes % 60, 2);
+		return new Minute(start, end, text);
+	}
+
+	private static void writeDigits(byte[] text, int position, int value, int digits) {
+		for (int i = position + digits - 1; i >= position; i--) {
+			text[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+}
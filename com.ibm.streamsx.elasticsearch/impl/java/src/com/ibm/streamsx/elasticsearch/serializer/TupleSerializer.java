@@ -0,0 +1,677 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.streams.operator.Attribute;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.Type;
+import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.meta.CollectionType;
+import com.ibm.streams.operator.meta.MapType;
+import com.ibm.streams.operator.meta.TupleType;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.Timestamp;
+
+/**
+ * Immutable serialization plan that converts tuples of a given schema into documents.
+ * The plan is built once from the input port schema: attributes used for index, type, id
+ * or timestamp values are excluded, field names are encoded in advance for the content format and every
+ * remaining attribute gets a writer specific to its type. Serializing a tuple only walks the plan.
+ * Nested tuples become objects, lists and sets become arrays and maps become objects with the keys as field names.
+ * The writers for their elements are part of the plan too, so composite values are encoded without conversion
+ * to an intermediate representation.
+ * Optionally, the encoded values of string attributes are cached, so attributes with few distinct values are
+ * escaped and encoded once per value. The plan does not change after it is built, only the caches fill up.
+ */
+public class TupleSerializer
+{
+	private final AttributeWriter[] writers;
+	private final ValueCache[] caches;
+
+	private TupleSerializer(AttributeWriter[] writers, ValueCache[] caches) {
+		this.writers = writers;
+		this.caches = caches;
+	}
+
+	/**
+	 * build the serialization plan for a schema
+	 * @param schema the schema of the tuples to serialize
+	 * @param excludedAttributes names of attributes that shall not become document fields
+	 * @param timestampName if not null, a field with this name containing a timestamp is added to each document
+	 * @param timestampAttribute name of the int64 attribute holding the timestamp in milliseconds, if null the current time is used
+	 * @param timestampFormat the format of the timestamp field
+	 * @param format the content format of the documents, the writers passed to serialize() must use this format
+	 * @param cachedAttributes names of string attributes whose encoded values are cached, if null all string attributes
+	 * get a cache that is switched off if the attribute has more distinct values than the cache can hold
+	 * @param valueCacheSize the maximum number of cached values per attribute, 0 disables the caches
+	 * @return the serialization plan
+	 */
+	public static TupleSerializer create(StreamSchema schema, Set<String> excludedAttributes, String timestampName, String timestampAttribute, TimestampFormat timestampFormat, ContentFormat format,
+			Set<String> cachedAttributes, int valueCacheSize) {
+		DocumentWriter names = format.createWriter(64);
+		List<AttributeWriter> plan = new ArrayList<AttributeWriter>();
+		List<ValueCache> caches = new ArrayList<ValueCache>();
+		for (Attribute attr : schema) {
+			if (excludedAttributes.contains(attr.getName())) {
+				continue;
+			}
+			if (valueCacheSize > 0 && isString(attr.getType()) && (cachedAttributes == null || cachedAttributes.contains(attr.getName()))) {
+				ValueCache cache = new ValueCache(valueCacheSize, cachedAttributes == null);
+				caches.add(cache);
+				if (attr.getType().getMetaType() == MetaType.USTRING) {
+					plan.add(new CachedStringWriter(names.encodeName(attr.getName()), attr.getIndex(), cache));
+				} else {
+					plan.add(new CachedRStringWriter(names.encodeName(attr.getName()), attr.getIndex(), cache));
+				}
+				continue;
+			}
+			plan.add(createWriter(attr, names, timestampFormat));
+		}
+		if (timestampName != null) {
+			int index = (timestampAttribute != null) ? schema.getAttribute(timestampAttribute).getIndex() : -1;
+			if (timestampFormat == TimestampFormat.EPOCH_MILLIS) {
+				plan.add(new EpochMillisWriter(names.encodeName(timestampName), index));
+			} else {
+				plan.add(new TimestampWriter(names.encodeName(timestampName), index));
+			}
+		}
+		return new TupleSerializer(plan.toArray(new AttributeWriter[plan.size()]), caches.toArray(new ValueCache[caches.size()]));
+	}
+
+	/**
+	 * write the document for a tuple
+	 * @param tuple the tuple to serialize
+	 * @param out the writer the document is appended to
+	 */
+	public void serialize(Tuple tuple, DocumentWriter out) {
+		out.writeHeader();
+		out.writeStartObject();
+		for (int i = 0; i < writers.length; i++) {
+			if (i > 0) {
+				out.writeSeparator();
+			}
+			writers[i].write(tuple, out);
+		}
+		out.writeEndObject();
+	}
+
+	/**
+	 * @param type the type of an attribute
+	 * @return true if attributes of this type can be serialized, composite types are checked recursively
+	 */
+	public static boolean isSupported(Type type) {
+		switch (type.getMetaType()) {
+		case BOOLEAN:
+		case INT8:
+		case INT16:
+		case INT32:
+		case INT64:
+		case UINT8:
+		case UINT16:
+		case UINT32:
+		case UINT64:
+		case FLOAT32:
+		case FLOAT64:
+		case RSTRING:
+		case USTRING:
+		case BSTRING:
+		case DECIMAL32:
+		case DECIMAL64:
+		case DECIMAL128:
+		case TIMESTAMP:
+			return true;
+		case TUPLE:
+			for (Attribute attr : ((TupleType) type).getTupleSchema()) {
+				if (!isSupported(attr.getType())) {
+					return false;
+				}
+			}
+			return true;
+		case LIST:
+		case BLIST:
+		case SET:
+		case BSET:
+			return isSupported(((CollectionType) type).getElementType());
+		case MAP:
+		case BMAP:
+			return isSupportedKey(((MapType) type).getKeyType()) && isSupported(((MapType) type).getValueType());
+		default:
+			return false;
+		}
+	}
+
+	// map keys become field names, so only types with an unambiguous text representation are allowed
+	private static boolean isSupportedKey(Type type) {
+		switch (type.getMetaType()) {
+		case BOOLEAN:
+		case INT8:
+		case INT16:
+		case INT32:
+		case INT64:
+		case UINT8:
+		case UINT16:
+		case UINT32:
+		case UINT64:
+		case RSTRING:
+		case USTRING:
+		case BSTRING:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return the number of string values written from the value caches
+	 */
+	public long getValueCacheHits() {
+		long hits = 0;
+		for (ValueCache cache : caches) {
+			hits += cache.getHits();
+		}
+		return hits;
+	}
+
+	/**
+	 * @return the number of string values that were not found in an enabled value cache
+	 */
+	public long getValueCacheMisses() {
+		long misses = 0;
+		for (ValueCache cache : caches) {
+			misses += cache.getMisses();
+		}
+		return misses;
+	}
+
+	/**
+	 * @return the number of values in all value caches
+	 */
+	public long getValueCacheEntries() {
+		long entries = 0;
+		for (ValueCache cache : caches) {
+			entries += cache.getEntries();
+		}
+		return entries;
+	}
+
+	/**
+	 * @param type the type of an attribute
+	 * @return true if the attribute is written with writeString() and its values can be cached
+	 */
+	private static boolean isString(Type type) {
+		MetaType metaType = type.getMetaType();
+		return metaType == MetaType.RSTRING || metaType == MetaType.USTRING || metaType == MetaType.BSTRING;
+	}
+
+	// plan construction -------------------------------------------------------------------------
+
+	private static AttributeWriter createWriter(Attribute attr, DocumentWriter names, TimestampFormat timestampFormat) {
+		byte[] name = names.encodeName(attr.getName());
+		int index = attr.getIndex();
+		MetaType type = attr.getType().getMetaType();
+		switch (type) {
+		case BOOLEAN:
+			return new BooleanWriter(name, index);
+		case INT8:
+		case INT16:
+		case INT32:
+			return new IntWriter(name, index);
+		case INT64:
+			return new LongWriter(name, index);
+		case UINT8:
+			return new UInt8Writer(name, index);
+		case UINT16:
+			return new UInt16Writer(name, index);
+		case UINT32:
+			return new UInt32Writer(name, index);
+		case UINT64:
+			return new UInt64Writer(name, index);
+		case FLOAT32:
+			return new FloatWriter(name, index);
+		case FLOAT64:
+			return new DoubleWriter(name, index);
+		case RSTRING:
+		case BSTRING:
+			return new RStringWriter(name, index);
+		case USTRING:
+			return new StringWriter(name, index);
+		default:
+			if (!isSupported(attr.getType())) {
+				throw new IllegalArgumentException("Unsupported attribute type for attribute '" + attr.getName() + "': " + attr.getType().getLanguageType());
+			}
+			return new ObjectWriter(name, index, createValueWriter(attr.getType(), names, timestampFormat));
+		}
+	}
+
+	/**
+	 * create the writer for values of a supported type, as they are returned by Tuple.getObject()
+	 */
+	private static ValueWriter createValueWriter(Type type, DocumentWriter names, TimestampFormat timestampFormat) {
+		switch (type.getMetaType()) {
+		case BOOLEAN:
+			return new BooleanValueWriter();
+		case INT8:
+		case INT16:
+		case INT32:
+		case INT64:
+			return new LongValueWriter();
+		case UINT8:
+			return new UInt8ValueWriter();
+		case UINT16:
+			return new UInt16ValueWriter();
+		case UINT32:
+			return new UInt32ValueWriter();
+		case UINT64:
+			return new UInt64ValueWriter();
+		case FLOAT32:
+			return new FloatValueWriter();
+		case FLOAT64:
+			return new DoubleValueWriter();
+		case RSTRING:
+		case USTRING:
+		case BSTRING:
+			return new StringValueWriter();
+		case DECIMAL32:
+		case DECIMAL64:
+		case DECIMAL128:
+			return new DecimalValueWriter();
+		case TIMESTAMP:
+			return (timestampFormat == TimestampFormat.EPOCH_MILLIS) ? new EpochMillisValueWriter() : new DateTimeValueWriter();
+		case TUPLE: {
+			List<AttributeWriter> attributes = new ArrayList<AttributeWriter>();
+			for (Attribute attr : ((TupleType) type).getTupleSchema()) {
+				attributes.add(createWriter(attr, names, timestampFormat));
+			}
+			return new TupleValueWriter(attributes.toArray(new AttributeWriter[attributes.size()]));
+		}
+		case LIST:
+		case BLIST:
+		case SET:
+		case BSET:
+			return new CollectionValueWriter(createValueWriter(((CollectionType) type).getElementType(), names, timestampFormat));
+		case MAP:
+		case BMAP: {
+			MapType mapType = (MapType) type;
+			return new MapValueWriter(mapType.getKeyType().getMetaType(), createValueWriter(mapType.getValueType(), names, timestampFormat));
+		}
+		default:
+			throw new IllegalArgumentException("Unsupported type: " + type.getLanguageType());
+		}
+	}
+
+	// attribute writers -------------------------------------------------------------------------
+
+	private static abstract class IndexedWriter implements AttributeWriter {
+		protected final byte[] name;
+		protected final int index;
+
+		IndexedWriter(byte[] name, int index) {
+			this.name = name;
+			this.index = index;
+		}
+	}
+
+	private static final class BooleanWriter extends IndexedWriter {
+		BooleanWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeBoolean(tuple.getBoolean(index));
+		}
+	}
+
+	private static final class IntWriter extends IndexedWriter {
+		IntWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeInt(tuple.getInt(index));
+		}
+	}
+
+	private static final class LongWriter extends IndexedWriter {
+		LongWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeLong(tuple.getLong(index));
+		}
+	}
+
+	// unsigned SPL types are represented by signed Java types of the same width
+	private static final class UInt8Writer extends IndexedWriter {
+		UInt8Writer(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeInt(tuple.getByte(index) & 0xFF);
+		}
+	}
+
+	private static final class UInt16Writer extends IndexedWriter {
+		UInt16Writer(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeInt(tuple.getShort(index) & 0xFFFF);
+		}
+	}
+
+	private static final class UInt32Writer extends IndexedWriter {
+		UInt32Writer(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeLong(tuple.getInt(index) & 0xFFFFFFFFL);
+		}
+	}
+
+	private static final class UInt64Writer extends IndexedWriter {
+		UInt64Writer(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeUnsignedLong(tuple.getLong(index));
+		}
+	}
+
+	private static final class FloatWriter extends IndexedWriter {
+		FloatWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeFloat(tuple.getFloat(index));
+		}
+	}
+
+	private static final class DoubleWriter extends IndexedWriter {
+		DoubleWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeDouble(tuple.getDouble(index));
+		}
+	}
+
+	private static final class StringWriter extends IndexedWriter {
+		StringWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeString(tuple.getString(index));
+		}
+	}
+
+	// rstring values are UTF-8 bytes, they are escaped without decoding them to a String.
+	// Invalid bytes, for example Latin-1 text, are decoded with replacement characters.
+	private static final class RStringWriter extends IndexedWriter {
+		RStringWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			if (!out.writeUtf8String(tuple.getRString(index).getByteBuffer())) {
+				out.writeString(tuple.getString(index));
+			}
+		}
+	}
+
+	private static final class CachedStringWriter extends IndexedWriter {
+		private final ValueCache cache;
+		CachedStringWriter(byte[] name, int index, ValueCache cache) {
+			super(name, index);
+			this.cache = cache;
+		}
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			cache.writeString(tuple.getString(index), out);
+		}
+	}
+
+	// rstring and bstring values are looked up by their bytes, without decoding them
+	private static final class CachedRStringWriter extends IndexedWriter {
+		private final ValueCache cache;
+		CachedRStringWriter(byte[] name, int index, ValueCache cache) {
+			super(name, index);
+			this.cache = cache;
+		}
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			cache.writeString(tuple.getRString(index), out);
+		}
+	}
+
+	// writes either the timestamp from an int64 attribute, or the current time if the index is negative
+	private static final class TimestampWriter extends IndexedWriter {
+		private final TimestampFormatter formatter = new TimestampFormatter();
+		TimestampWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			long timestamp = (index >= 0) ? tuple.getLong(index) : System.currentTimeMillis();
+			out.writeFieldName(name);
+			formatter.write(timestamp, out);
+		}
+	}
+
+	// writes the timestamp as number of milliseconds since the epoch
+	private static final class EpochMillisWriter extends IndexedWriter {
+		EpochMillisWriter(byte[] name, int index) { super(name, index); }
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			out.writeLong((index >= 0) ? tuple.getLong(index) : System.currentTimeMillis());
+		}
+	}
+
+	// writes an attribute of a composite type, decimal or timestamp with the writer of its type
+	private static final class ObjectWriter extends IndexedWriter {
+		private final ValueWriter value;
+		ObjectWriter(byte[] name, int index, ValueWriter value) {
+			super(name, index);
+			this.value = value;
+		}
+		@Override
+		public void write(Tuple tuple, DocumentWriter out) {
+			out.writeFieldName(name);
+			value.write(tuple.getObject(index), out);
+		}
+	}
+
+	// value writers -----------------------------------------------------------------------------
+
+	private static final class BooleanValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeBoolean((Boolean) value);
+		}
+	}
+
+	// signed integers of all widths
+	private static final class LongValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeLong(((Number) value).longValue());
+		}
+	}
+
+	private static final class UInt8ValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeInt((Byte) value & 0xFF);
+		}
+	}
+
+	private static final class UInt16ValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeInt((Short) value & 0xFFFF);
+		}
+	}
+
+	private static final class UInt32ValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeLong((Integer) value & 0xFFFFFFFFL);
+		}
+	}
+
+	private static final class UInt64ValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeUnsignedLong((Long) value);
+		}
+	}
+
+	private static final class FloatValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeFloat((Float) value);
+		}
+	}
+
+	private static final class DoubleValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeDouble((Double) value);
+		}
+	}
+
+	// rstring values are RString objects and are written from their bytes, ustring values are String objects
+	private static final class StringValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			if (value instanceof RString) {
+				RString string = (RString) value;
+				if (!out.writeUtf8String(string.getByteBuffer())) {
+					out.writeString(string.getString());
+				}
+			} else {
+				out.writeString((String) value);
+			}
+		}
+	}
+
+	private static final class DecimalValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeDecimal((BigDecimal) value);
+		}
+	}
+
+	// timestamp values in the format of the timestamp field, with millisecond precision
+	private static final class DateTimeValueWriter implements ValueWriter {
+		private final TimestampFormatter formatter = new TimestampFormatter();
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			formatter.write(((Timestamp) value).getTime(), out);
+		}
+	}
+
+	private static final class EpochMillisValueWriter implements ValueWriter {
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeLong(((Timestamp) value).getTime());
+		}
+	}
+
+	private static final class TupleValueWriter implements ValueWriter {
+		private final AttributeWriter[] attributes;
+		TupleValueWriter(AttributeWriter[] attributes) {
+			this.attributes = attributes;
+		}
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			Tuple tuple = (Tuple) value;
+			out.writeStartObject();
+			for (int i = 0; i < attributes.length; i++) {
+				if (i > 0) {
+					out.writeSeparator();
+				}
+				attributes[i].write(tuple, out);
+			}
+			out.writeEndObject();
+		}
+	}
+
+	// lists and sets
+	private static final class CollectionValueWriter implements ValueWriter {
+		private final ValueWriter element;
+		CollectionValueWriter(ValueWriter element) {
+			this.element = element;
+		}
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeStartArray();
+			boolean first = true;
+			for (Object e : (Collection<?>) value) {
+				if (!first) {
+					out.writeSeparator();
+				}
+				first = false;
+				element.write(e, out);
+			}
+			out.writeEndArray();
+		}
+	}
+
+	// the keys are field names, they are encoded for each entry
+	private static final class MapValueWriter implements ValueWriter {
+		private final MetaType keyType;
+		private final ValueWriter element;
+		MapValueWriter(MetaType keyType, ValueWriter element) {
+			this.keyType = keyType;
+			this.element = element;
+		}
+		@Override
+		public void write(Object value, DocumentWriter out) {
+			out.writeStartObject();
+			boolean first = true;
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+				if (!first) {
+					out.writeSeparator();
+				}
+				first = false;
+				out.writeFieldName(out.encodeName(keyToText(keyType, e.getKey())));
+				element.write(e.getValue(), out);
+			}
+			out.writeEndObject();
+		}
+	}
+
+	private static String toText(Object value) {
+		return (value instanceof RString) ? ((RString) value).getString() : (String) value;
+	}
+
+	private static String keyToText(MetaType keyType, Object key) {
+		switch (keyType) {
+		case UINT8:
+			return Integer.toString((Byte) key & 0xFF);
+		case UINT16:
+			return Integer.toString((Short) key & 0xFFFF);
+		case UINT32:
+			return Long.toString((Integer) key & 0xFFFFFFFFL);
+		case UINT64:
+			return Long.toUnsignedString((Long) key);
+		case RSTRING:
+		case USTRING:
+		case BSTRING:
+			return toText(key);
+		default:
+			return String.valueOf(key);
+		}
+	}
+}
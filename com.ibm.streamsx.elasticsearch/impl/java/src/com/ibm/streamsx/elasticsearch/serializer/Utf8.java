@@ -0,0 +1,64 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+/**
+ * Validation of UTF-8 bytes that are copied into a document without decoding them.
+ * Overlong encodings, surrogates and code points above U+10FFFF are invalid, like in the Java decoder.
+ */
+final class Utf8
+{
+	private Utf8() {
+	}
+
+	/**
+	 * @param b the bytes
+	 * @param i the position of a byte that is not ASCII, the lead byte of a multi-byte sequence
+	 * @param end the end of the valid bytes
+	 * @return the length of the sequence starting at i, or 0 if it is not a valid UTF-8 sequence
+	 */
+	static int sequenceLength(byte[] b, int i, int end) {
+		int lead = b[i] & 0xFF;
+		int length;
+		// the range of the second byte is restricted for some lead bytes
+		int min = 0x80;
+		int max = 0xBF;
+		if (lead >= 0xC2 && lead <= 0xDF) {
+			length = 2;
+		} else if (lead >= 0xE0 && lead <= 0xEF) {
+			length = 3;
+			if (lead == 0xE0) {
+				min = 0xA0;
+			} else if (lead == 0xED) {
+				max = 0x9F;
+			}
+		} else if (lead >= 0xF0 && lead <= 0xF4) {
+			length = 4;
+			if (lead == 0xF0) {
+				min = 0x90;
+			} else if (lead == 0xF4) {
+				max = 0x8F;
+			}
+		} else {
+			return 0;
+		}
+		if (i + length > end) {
+			return 0;
+		}
+		int second = b[i + 1] & 0xFF;
+		if (second < min || second > max) {
+			return 0;
+		}
+		for (int k = i + 2; k < i + length; k++) {
+			if ((b[k] & 0xC0) != 0x80) {
+				return 0;
+			}
+		}
+		return length;
+	}
+}
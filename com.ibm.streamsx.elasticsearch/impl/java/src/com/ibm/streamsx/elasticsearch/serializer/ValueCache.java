@@ -0,0 +1,114 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ibm.streams.operator.types.RString;
+
+/**
+ * Bounded cache of string values of one attribute and their encoded bytes, as written by the DocumentWriter.
+ * For attributes with few distinct values, the escaping and encoding is done once per value, afterwards the bytes are copied.
+ * rstring values are looked up by their RString, which compares the bytes, so they are not decoded to a String.
+ * Values are added until the cache is full, there is no eviction.
+ * An adaptive cache switches itself off if it is full and less than half of the lookups were hits,
+ * because the attribute has more distinct values than the cache can hold.
+ * The cache can be used by several threads.
+ */
+class ValueCache
+{
+	// String or RString keys, one cache holds only one of them
+	private final ConcurrentHashMap<Object, byte[]> values = new ConcurrentHashMap<Object, byte[]>();
+	private final int maxEntries;
+	private final boolean adaptive;
+	private final AtomicInteger entries = new AtomicInteger();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private volatile boolean enabled = true;
+
+	/**
+	 * @param maxEntries the maximum number of cached values
+	 * @param adaptive true if the cache shall be switched off for attributes with too many distinct values
+	 */
+	ValueCache(int maxEntries, boolean adaptive) {
+		this.maxEntries = maxEntries;
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * write the string value, from the cache if possible
+	 */
+	void writeString(String value, DocumentWriter out) {
+		if (writeCached(value, out)) {
+			return;
+		}
+		int start = out.size();
+		out.writeString(value);
+		store(value, start, out);
+	}
+
+	/**
+	 * write the UTF-8 string value, from the cache if possible
+	 */
+	void writeString(RString value, DocumentWriter out) {
+		if (writeCached(value, out)) {
+			return;
+		}
+		int start = out.size();
+		if (!out.writeUtf8String(value.getByteBuffer())) {
+			out.writeString(value.getString());
+		}
+		store(value, start, out);
+	}
+
+	// returns true if the value was written from the cache
+	private boolean writeCached(Object value, DocumentWriter out) {
+		if (!enabled) {
+			return false;
+		}
+		byte[] encoded = values.get(value);
+		if (encoded != null) {
+			hits.increment();
+			out.writeRaw(encoded);
+			return true;
+		}
+		return false;
+	}
+
+	// add the value written after start, or disable the cache if it is full and does not help
+	private void store(Object value, int start, DocumentWriter out) {
+		if (!enabled) {
+			return;
+		}
+		misses.increment();
+		if (entries.get() < maxEntries) {
+			if (values.putIfAbsent(value, Arrays.copyOfRange(out.getBuffer(), start, out.size())) == null) {
+				entries.incrementAndGet();
+			}
+		} else if (adaptive && hits.sum() < misses.sum()) {
+			enabled = false;
+			values.clear();
+			entries.set(0);
+		}
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	int getEntries() {
+		return entries.get();
+	}
+}
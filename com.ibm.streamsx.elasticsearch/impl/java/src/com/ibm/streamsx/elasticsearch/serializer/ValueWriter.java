@@ -0,0 +1,23 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2018, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.elasticsearch.serializer;
+
+/**
+ * A writer for a value of one SPL type, used for the elements of lists, sets and maps and for
+ * attributes of composite types. Instances are created once per type when the serialization
+ * plan is built, writers for composite types hold the writers of their element types.
+ */
+interface ValueWriter
+{
+	/**
+	 * append the value to the document
+	 * @param value the value as returned by Tuple.getObject(), or an element of such a collection
+	 * @param out the writer for the document
+	 */
+	void write(Object value, DocumentWriter out);
+}
@@ -0,0 +1,25 @@
+# Submission test for Streams
+#--variantList='document bulk'
+
+setCategory 'quick'
+PREPS='copyAndMorphSpl splCompile'
+STEPS='submitJob checkJobNo waitForFin cancelJobAndLog Evaluate'
+FINS=(cancelJob 'es_dropIndex index1' )
+
+Evaluate() {
+	if ! echoAndExecute es_dumpIndex index1 5 id ; then
+		setFailure 'Cannot dump index1'
+	fi
+
+	if ! echoAndExecute es_matchIndexDocFields index1 _index _type _id id ; then
+		setFailure 'Match document fields in index1 failed'
+	fi
+
+	# the latency differs from run to run and is not part of the output schema
+	sort data/Acknowledgements.csv > Acknowledgements.sorted
+	if ! echoAndExecute diff Acknowledgements.sorted "expected/$TTRO_variantCase.csv" ; then
+		setFailure 'Acknowledgements do not match'
+	fi
+
+	return 0
+}
@@ -1,5 +1,5 @@
 # Submission test for Streams
-#--variantList='List Set Map Tuple'
+#--variantList='Blob Complex Map List'
 
 setCategory 'quick'
 PREPS='copyAndMorphSpl splCompile'
@@ -7,14 +7,14 @@ STEPS='es_runStandalone Evaluate'
 
 Evaluate() {
 	case "$TTRO_variantCase" in
-	List)
-		egrep "CDIST3506E Input attribute 'intlist' has unsupported type: 'LIST'" standalone.log ;;
-	Set)
-		egrep "CDIST3506E Input attribute 'intset' has unsupported type: 'SET'" standalone.log ;;
+	Blob)
+		egrep "CDIST3506E Input attribute 'someBlob' has unsupported type: 'blob'" standalone.log ;;
+	Complex)
+		egrep "CDIST3506E Input attribute 'someComplex' has unsupported type: 'complex64'" standalone.log ;;
 	Map)
-		egrep "CDIST3506E Input attribute 'intmap' has unsupported type: 'MAP'" standalone.log ;;
-	Tuple)
-		egrep "CDIST3506E Input attribute 'someTuple' has unsupported type: 'TUPLE'" standalone.log ;;
+		egrep "CDIST3506E Input attribute 'floatmap' has unsupported type: 'map<float64,int32>'" standalone.log ;;
+	List)
+		egrep "CDIST3506E Input attribute 'bloblist' has unsupported type: 'list<blob>'" standalone.log ;;
 	*)
 		printErrorAndExit "Wrong case variant" $errRt
 	esac
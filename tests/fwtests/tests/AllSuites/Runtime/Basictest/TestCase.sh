@@ -1,12 +1,13 @@
 # Submission test for Streams
-##--variantList=''
+#--variantList='json smile gzip'
 
 setCategory 'quick'
-PREPS='copyOnly splCompile'
+PREPS='copyAndMorphSpl splCompile'
 STEPS='submitJob checkJobNo waitForFin cancelJob Evaluate'
 FINS=(cancelJob 'es_dropIndex index1' 'es_dropIndex index2')
 
 Evaluate() {
+	# documents sent as SMILE or compressed are stored like JSON documents, all variants have the same expected dumps
 	if ! echoAndExecute es_dumpIndex index1 5 id ; then
 		setFailure 'Cannot dump index1'
 	fi
@@ -0,0 +1,29 @@
+# Submission test for Streams
+
+setCategory 'quick'
+PREPS='copyOnly splCompile'
+STEPS='submitJob checkJobNo checkSent waitForFin cancelJobAndLog Evaluate'
+FINS=(cancelJob 'es_dropIndex index1' )
+
+# the full bulks must be indexed while the final punctuation is held back, the last document is sent with it
+checkSent() {
+	if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 numInserts 9 ; then
+		setFailure 'Bulks not sent when bulkSizeBytes was reached'
+	fi
+	if [ -e data/FinalMarker ] ; then
+		setFailure 'Documents were only sent on the final punctuation'
+	fi
+	return 0
+}
+
+Evaluate() {
+	if ! echoAndExecute es_dumpIndex index1 20 id ; then
+		setFailure 'Cannot dump index1'
+	fi
+
+	if ! echoAndExecute es_matchIndexDocFields index1 _index _type id msg ; then
+		setFailure 'Match document fields in index1 failed'
+	fi
+
+	return 0
+}
@@ -0,0 +1,33 @@
+# Submission test for Streams
+
+setCategory 'quick'
+PREPS='copyOnly splCompile'
+STEPS='submitJob checkJobNo waitForFin checkMetrics cancelJobAndLog Evaluate'
+FINS=(cancelJob 'es_dropIndex index1' )
+
+# the metrics can only be captured while the job is running
+checkMetrics() {
+	# the last documents are indexed by the drain after the final punctuation
+	if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 numInserts 104 ; then
+		setFailure 'Not all documents indexed'
+	fi
+	if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 lastDrainParallelism 3 ; then
+		setFailure 'Wrong number of sub-bulks sent on drain'
+	fi
+	if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 numFailedDrains 0 ; then
+		setFailure 'Drain failed'
+	fi
+	return 0
+}
+
+Evaluate() {
+	if ! echoAndExecute es_dumpIndex index1 200 id ; then
+		setFailure 'Cannot dump index1'
+	fi
+
+	if ! echoAndExecute es_matchIndexDocFields index1 _index _type _id id ; then
+		setFailure 'Match document fields in index1 failed'
+	fi
+
+	return 0
+}
@@ -1,11 +1,21 @@
 # Submission test for Streams
-##--variantList=''
+#--variantList='rstring blob invalid'
 
 setCategory 'quick'
-PREPS='copyOnly splCompile'
-STEPS='submitJob checkJobNo waitForFin cancelJobAndLog Evaluate'
+PREPS='copyAndMorphSpl splCompile'
+STEPS='submitJob checkJobNo waitForFin checkMetrics cancelJobAndLog Evaluate'
 FINS=(cancelJob 'es_dropIndex index1' )
 
+# the metrics can only be captured while the job is running
+checkMetrics() {
+	if [ "$TTRO_variantCase" == "invalid" ] ; then
+		if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 numInvalidDocuments 1 ; then
+			setFailure 'Invalid document not counted'
+		fi
+	fi
+	return 0
+}
+
 Evaluate() {
 	if ! echoAndExecute es_dumpIndex index1 5 id ; then
 		setFailure 'Cannot dump index1'
@@ -15,5 +25,15 @@ Evaluate() {
 		setFailure 'Match document fields in index1 failed'
 	fi
 
+	# the invalid document is not indexed, but emitted on the failed document port
+	if [ "$TTRO_variantCase" == "invalid" ] ; then
+		if ! echoAndExecute egrep ',0,"Document has an unterminated string"$' data/FailedDocuments.csv ; then
+			setFailure 'Invalid document not emitted'
+		fi
+		if [ `wc -l < data/FailedDocuments.csv` -ne 1 ] ; then
+			setFailure 'Wrong number of failed documents'
+		fi
+	fi
+
 	return 0
 }
@@ -0,0 +1,27 @@
+# Submission test for Streams
+##--variantList=''
+
+setCategory 'quick'
+PREPS='copyOnly splCompile'
+STEPS='submitJob checkJobNo waitForFin cancelJobAndLog Evaluate'
+FINS=(cancelJob 'es_dropIndex index1' )
+
+Evaluate() {
+	if ! echoAndExecute es_dumpIndex index1 5 id ; then
+		setFailure 'Cannot dump index1'
+	fi
+
+	if ! echoAndExecute es_matchIndexDocFields index1 _index _type _id id val ; then
+		setFailure 'Match document fields in index1 failed'
+	fi
+
+	# only the document with the mapping conflict is emitted on the failed document port
+	if ! echoAndExecute egrep '^"index1","2",400,"failed to parse' data/FailedDocuments.csv ; then
+		setFailure 'Failed document not emitted'
+	fi
+	if [ `wc -l < data/FailedDocuments.csv` -ne 1 ] ; then
+		setFailure 'Wrong number of failed documents'
+	fi
+
+	return 0
+}
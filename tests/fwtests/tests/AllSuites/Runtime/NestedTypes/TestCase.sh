@@ -0,0 +1,24 @@
+# Submission test for Streams
+##--variantList=''
+
+setCategory 'quick'
+PREPS='copyOnly splCompile'
+STEPS='submitJob checkJobNo waitForFin cancelJob Evaluate'
+FINS=(cancelJob 'es_dropIndex index1')
+
+Evaluate() {
+	if ! echoAndExecute es_dumpIndex index1 5 id ; then
+		setFailure 'Cannot dump index1'
+	fi
+
+	# the timestamp is formatted in the local time zone
+	if ! es_maskIndexDocFields index1 ts ; then
+		setFailure 'Cannot mask index fields'
+	fi
+
+	if ! echoAndExecute es_matchIndexDocFields index1 _index _type id someTuple x y intlist tuplelist a b strset strmap key ts dec ; then
+		setFailure 'Match document fields in index1 failed'
+	fi
+
+	return 0
+}
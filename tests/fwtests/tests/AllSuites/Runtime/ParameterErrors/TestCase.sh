@@ -1,5 +1,5 @@
 # Submission test for Streams
-#--variantList='ERR1 ERR2 ERR3 ERR4 ERR5 ERR6 ERR7'
+#--variantList='ERR1 ERR2 ERR3 ERR4 ERR5 ERR6 ERR7 ERR8 ERR9 ERR10 ERR11 ERR12 ERR13 ERR14 ERR15'
 
 setCategory 'quick'
 PREPS='copyAndMorphSpl splCompile'
@@ -21,6 +21,22 @@ Evaluate() {
 		egrep "CDIST3508E Parameter 'connectionTimeout' has an invalid value of '-1'" standalone.log ;;
 	ERR7)
 		egrep "CDIST3508E Parameter 'maxConnectionIdleTime' has an invalid value of '-1'" standalone.log ;;
+	ERR8)
+		egrep "CDIST3508E Parameter 'bulkSizeBytes' has an invalid value of '-1'" standalone.log ;;
+	ERR9)
+		egrep "CDIST3508E Parameter 'flushInterval' has an invalid value of '-1'" standalone.log ;;
+	ERR10)
+		egrep "CDIST3508E Parameter 'maxDocumentAge' has an invalid value of '-1'" standalone.log ;;
+	ERR11)
+		egrep "CDIST3508E Parameter 'contentFormat' has an invalid value of 'xml'" standalone.log ;;
+	ERR12)
+		egrep "CDIST3508E Parameter 'contentFormat' has an invalid value of 'smile'" standalone.log ;;
+	ERR13)
+		egrep "CDIST3508E Parameter 'acknowledgementMode' has an invalid value of 'item'" standalone.log ;;
+	ERR14)
+		egrep "CDIST3508E Parameter 'acknowledgementQueueSize' has an invalid value of '0'" standalone.log ;;
+	ERR15)
+		egrep "CDIST3508E Parameter 'timestampFormat' has an invalid value of 'epoch_seconds'" standalone.log ;;
 	*)
 		printErrorAndExit "Wrong case variant" $errRt
 	esac
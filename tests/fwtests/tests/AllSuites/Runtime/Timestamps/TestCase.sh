@@ -3,7 +3,7 @@
 
 PREPS='copyOnly splCompile'
 STEPS='submitJob checkJobNo waitForFin cancelJob Evaluate'
-FINS=(cancelJob 'es_dropIndex idx1' 'es_dropIndex idx2' 'es_dropIndex idx3')
+FINS=(cancelJob 'es_dropIndex idx1' 'es_dropIndex idx2' 'es_dropIndex idx3' 'es_dropIndex idx4')
 
 Evaluate() {
 
@@ -17,6 +17,9 @@ Evaluate() {
 	if ! echoAndExecute es_dumpIndex idx3 3 id ; then
 		setFailure 'Cannot dump index'
 	fi
+	if ! echoAndExecute es_dumpIndex idx4 3 id ; then
+		setFailure 'Cannot dump index'
+	fi
 
 	# remove content of timestamp fields
 	if ! es_maskIndexDocFields idx2 currTime ; then
@@ -36,6 +39,9 @@ Evaluate() {
 	if ! echoAndExecute es_matchIndexDocFields idx3 _index _type rmsg id tupleTime ; then
 		setFailure 'Match document fields in idx3 failed'
 	fi
+	if ! echoAndExecute es_matchIndexDocFields idx4 _index _type rmsg id tupleTime ; then
+		setFailure 'Match document fields in idx4 failed'
+	fi
 
 	return 0
 }
@@ -0,0 +1,31 @@
+# Submission test for Streams
+#--variantList='json smile'
+
+setCategory 'quick'
+PREPS='copyAndMorphSpl splCompile'
+STEPS='submitJob checkJobNo waitForFin checkMetrics cancelJobAndLog Evaluate'
+FINS=(cancelJob 'es_dropIndex index1')
+
+# the metrics can only be captured while the job is running
+checkMetrics() {
+	# two distinct values per attribute are encoded, the other values are copied from the cache
+	if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 valueCacheMisses 4 ; then
+		setFailure 'Wrong number of value cache misses'
+	fi
+	if ! echoAndExecute es_checkOperatorMetric Elasticsearch1 valueCacheHits 8 ; then
+		setFailure 'Wrong number of value cache hits'
+	fi
+	return 0
+}
+
+Evaluate() {
+	if ! echoAndExecute es_dumpIndex index1 10 id ; then
+		setFailure 'Cannot dump index1'
+	fi
+
+	if ! echoAndExecute es_matchIndexDocFields index1 _index _type id category ucategory ; then
+		setFailure 'Match document fields in index1 failed'
+	fi
+
+	return 0
+}
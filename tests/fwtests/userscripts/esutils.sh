@@ -243,6 +243,36 @@ function es_dropIndex {
 }
 export -f es_dropIndex
 
+TTRO_help_es_checkOperatorMetric='
+# Function es_checkOperatorMetric
+#	Check the value of a metric of an operator in the running job $TTTT_jobno
+#   The metrics are captured with streamtool capturestate. They are updated periodically,
+#   so the check is repeated for up to 30 seconds
+#   $1 the name of the operator
+#   $2 the name of the metric
+#   $3 the expected value'
+function es_checkOperatorMetric {
+	isDebug && printDebug "$FUNCNAME $*"
+
+	for i in 1 2 3 4 5 6 7 8 9 10
+	do
+		$TTPRN_st capturestate -d "$TTPRN_streamsDomainId" -i "$TTPRN_streamsInstanceId" --select "jobs=$TTTT_jobno=metrics" >metrics.xml
+		# the value follows the metric name within the element of the operator
+		value=`awk -v op="name=\"$1\"" -v m="name=\"$2\"" '
+			/<operator / { inOp = index($0, op) > 0; inMetric = 0 }
+			inOp && index($0, m) { inMetric = 1 }
+			inMetric && match($0, /value="[^"]*"/) { print substr($0, RSTART + 7, RLENGTH - 8); exit }' metrics.xml`
+		printInfo "Metric $2 of operator $1 = $value"
+		if [ "$value" == "$3" ] ; then
+			return 0
+		fi
+		sleep 3
+	done
+	printError "Metric $2 of operator $1 has not the expected value $3"
+	return $errTestFail
+}
+export -f es_checkOperatorMetric
+
 TTRO_help_es_runStandalone='
 # Function es_runStandalone
 #	Run the application as standalone